@@ -0,0 +1,95 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Entities shaped like the studio data, shared by the benchmarks.
+ */
+final class BenchmarkData {
+    static final int TEACHER_COUNT = 5;
+
+    static final int USER_COUNT = 200;
+
+    static final int PARTICIPANTS_PER_SESSION = 10;
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 1, 15, 9, 30);
+
+    private BenchmarkData() {
+    }
+
+    static Map<Long, Teacher> teachers() {
+        Map<Long, Teacher> teachers = new LinkedHashMap<>();
+        for (long id = 1; id <= TEACHER_COUNT; id++) {
+            teachers.put(id, teacher(id));
+        }
+        return teachers;
+    }
+
+    static Map<Long, User> users() {
+        Map<Long, User> users = new LinkedHashMap<>();
+        for (long id = 1; id <= USER_COUNT; id++) {
+            users.put(id, user(id));
+        }
+        return users;
+    }
+
+    static Teacher teacher(long id) {
+        return new Teacher(id, "Delahaye " + id, "Margot", CREATED_AT, CREATED_AT);
+    }
+
+    static User user(long id) {
+        return new User(id, "yogi" + id + "@studio.com", "Doe", "John",
+                "$2a$10$fGkDZ6N1Q4t1nWJxwqrB4eAsdWuMZ1RHZVv5eL2zF8I1P2bZC3k6a", false, CREATED_AT, CREATED_AT);
+    }
+
+    static List<Session> sessions(int count, Map<Long, Teacher> teachers, Map<Long, User> users) {
+        List<Session> sessions = new ArrayList<>(count);
+        for (long id = 1; id <= count; id++) {
+            List<User> participants = new ArrayList<>(PARTICIPANTS_PER_SESSION);
+            for (int i = 0; i < PARTICIPANTS_PER_SESSION; i++) {
+                participants.add(users.get((id * PARTICIPANTS_PER_SESSION + i) % USER_COUNT + 1));
+            }
+            sessions.add(Session.builder()
+                    .id(id)
+                    .name("Vinyasa flow " + id)
+                    .date(new Date(1_700_000_000_000L + id * 3_600_000L))
+                    .description("A dynamic sequence linking breath and movement, for every level.")
+                    .capacity(20)
+                    .teacher(teachers.get(id % TEACHER_COUNT + 1))
+                    .users(participants)
+                    .createdAt(CREATED_AT)
+                    .updatedAt(CREATED_AT)
+                    .build());
+        }
+        return sessions;
+    }
+
+    /**
+     * A repository answering {@code findAllById} from memory, so that mapping is measured without a database.
+     */
+    static <R> R repository(Class<R> type, Map<Long, ?> rows) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (!"findAllById".equals(method.getName())) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            List<Object> found = new ArrayList<>();
+            for (Object id : (Iterable<?>) args[0]) {
+                Object row = rows.get(id);
+                if (row != null) {
+                    found.add(row);
+                }
+            }
+            return found;
+        }));
+    }
+}
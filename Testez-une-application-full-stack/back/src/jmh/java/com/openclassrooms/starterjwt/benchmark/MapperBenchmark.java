@@ -0,0 +1,152 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.TeacherDto;
+import com.openclassrooms.starterjwt.dto.UserDto;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
+import com.openclassrooms.starterjwt.mapper.TeacherMapper;
+import com.openclassrooms.starterjwt.mapper.UserMapper;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.services.ResourceVersions;
+import com.openclassrooms.starterjwt.services.TeacherCache;
+import com.openclassrooms.starterjwt.services.TeacherService;
+import com.openclassrooms.starterjwt.services.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity and DTO mapping of every read and write. Teachers come from a warm {@link TeacherCache},
+ * users from an in-memory repository, so only the mapping itself is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MapperBenchmark {
+    private SessionMapper sessionMapper;
+
+    private final UserMapper userMapper = new UserMapper();
+
+    private final TeacherMapper teacherMapper = new TeacherMapper();
+
+    private Session session;
+
+    private SessionDto sessionDto;
+
+    private User user;
+
+    private UserDto userDto;
+
+    private Teacher teacher;
+
+    private TeacherDto teacherDto;
+
+    @State(Scope.Benchmark)
+    public static class Lists {
+        @Param({"20", "500"})
+        public int size;
+
+        private List<Session> sessions;
+
+        private List<SessionDto> sessionDtos;
+
+        private List<User> users;
+
+        private List<Teacher> teachers;
+
+        @Setup
+        public void setUp(MapperBenchmark benchmark) {
+            sessions = BenchmarkData.sessions(size, BenchmarkData.teachers(), BenchmarkData.users());
+            sessionDtos = benchmark.sessionMapper.toDto(sessions);
+            users = new ArrayList<>(BenchmarkData.users().values()).subList(0, Math.min(size, BenchmarkData.USER_COUNT));
+            teachers = new ArrayList<>(size);
+            for (long id = 1; id <= size; id++) {
+                teachers.add(BenchmarkData.teacher(id));
+            }
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        Map<Long, Teacher> teachers = BenchmarkData.teachers();
+        Map<Long, User> users = BenchmarkData.users();
+
+        TeacherCache teacherCache = new TeacherCache(10_000, 3_600_000);
+        teacherCache.putTeachers(teachers.values());
+        TeacherService teacherService = new TeacherService(
+                BenchmarkData.repository(TeacherRepository.class, teachers), teacherCache, new ResourceVersions());
+        UserService userService = new UserService(BenchmarkData.repository(UserRepository.class, users), null, null, null);
+
+        sessionMapper = new SessionMapper();
+        ReflectionTestUtils.setField(sessionMapper, "teacherService", teacherService);
+        ReflectionTestUtils.setField(sessionMapper, "userService", userService);
+
+        session = BenchmarkData.sessions(1, teachers, users).get(0);
+        sessionDto = sessionMapper.toDto(session);
+        user = users.get(1L);
+        userDto = userMapper.toDto(user);
+        teacher = teachers.get(1L);
+        teacherDto = teacherMapper.toDto(teacher);
+    }
+
+    @Benchmark
+    public SessionDto sessionToDto() {
+        return sessionMapper.toDto(session);
+    }
+
+    @Benchmark
+    public Session sessionToEntity() {
+        return sessionMapper.toEntity(sessionDto);
+    }
+
+    @Benchmark
+    public List<SessionDto> sessionListToDto(Lists lists) {
+        return sessionMapper.toDto(lists.sessions);
+    }
+
+    @Benchmark
+    public List<Session> sessionListToEntity(Lists lists) {
+        return sessionMapper.toEntity(lists.sessionDtos);
+    }
+
+    @Benchmark
+    public UserDto userToDto() {
+        return userMapper.toDto(user);
+    }
+
+    @Benchmark
+    public User userToEntity() {
+        return userMapper.toEntity(userDto);
+    }
+
+    @Benchmark
+    public List<UserDto> userListToDto(Lists lists) {
+        return userMapper.toDto(lists.users);
+    }
+
+    @Benchmark
+    public TeacherDto teacherToDto() {
+        return teacherMapper.toDto(teacher);
+    }
+
+    @Benchmark
+    public Teacher teacherToEntity() {
+        return teacherMapper.toEntity(teacherDto);
+    }
+
+    @Benchmark
+    public List<TeacherDto> teacherListToDto(Lists lists) {
+        return teacherMapper.toDto(lists.teachers);
+    }
+}
@@ -0,0 +1,40 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BCrypt hashing of signup and login, at the strengths oc.app.bcryptStrength may take.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PasswordEncoderBenchmark {
+    @Param({"10", "12"})
+    public int strength;
+
+    private BCryptPasswordEncoder passwordEncoder;
+
+    private String hash;
+
+    @Setup
+    public void setUp() {
+        passwordEncoder = new BCryptPasswordEncoder(strength);
+        hash = passwordEncoder.encode("test!1234");
+    }
+
+    @Benchmark
+    public String encode() {
+        return passwordEncoder.encode("test!1234");
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return passwordEncoder.matches("test!1234", hash);
+    }
+}
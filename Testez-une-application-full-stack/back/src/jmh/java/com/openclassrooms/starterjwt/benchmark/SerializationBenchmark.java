@@ -0,0 +1,44 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON writing of the session listing, with the settings Spring Boot gives its ObjectMapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SerializationBenchmark {
+    @Param({"20", "500"})
+    public int size;
+
+    private ObjectWriter writer;
+
+    private List<SessionDto> sessionDtos;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        writer = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, SessionDto.class));
+        // toDto of an entity list never touches the services
+        sessionDtos = new SessionMapper().toDto(
+                BenchmarkData.sessions(size, BenchmarkData.teachers(), BenchmarkData.users()));
+    }
+
+    @Benchmark
+    public byte[] writeSessionList() throws JsonProcessingException {
+        return writer.writeValueAsBytes(sessionDtos);
+    }
+}
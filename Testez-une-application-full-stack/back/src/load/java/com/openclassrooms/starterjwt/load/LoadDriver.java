@@ -0,0 +1,197 @@
+package com.openclassrooms.starterjwt.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Runs one thread per virtual user against the started application, each sending its next request
+ * as soon as the previous one is answered.
+ *
+ * <p>This is a closed loop: a slow response also delays the requests queued behind it, so the
+ * percentiles understate what clients arriving at a fixed rate would see during a stall.
+ */
+final class LoadDriver {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .version(HttpClient.Version.HTTP_1_1)
+            .build();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final URI baseUri;
+
+    private final LoadSettings settings;
+
+    private final List<Long> sessionIds;
+
+    private final List<VirtualUser> virtualUsers = new ArrayList<>();
+
+    private final Operation[] operations;
+
+    private final int[] cumulativeWeights;
+
+    /**
+     * @param sessionsOf the sessions a seeded user already takes part in
+     */
+    LoadDriver(URI baseUri, LoadSettings settings, LoadSeeder.Seeded seeded, Function<Long, List<Long>> sessionsOf) {
+        this.baseUri = baseUri;
+        this.settings = settings;
+        this.sessionIds = seeded.sessionIds;
+        for (int i = 0; i < settings.threads; i++) {
+            Long userId = seeded.userIds.get(i);
+            virtualUsers.add(new VirtualUser(LoadSeeder.email(i), userId, sessionsOf.apply(userId)));
+        }
+
+        operations = settings.mix.keySet().toArray(new Operation[0]);
+        cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += settings.mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    /**
+     * Drives every virtual user for {@code seconds} and returns what they measured.
+     */
+    LoadReport run(int seconds) throws InterruptedException {
+        LoadReport report = new LoadReport();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+
+        List<Thread> threads = new ArrayList<>(virtualUsers.size());
+        for (VirtualUser virtualUser : virtualUsers) {
+            Thread thread = new Thread(() -> virtualUser.run(report, deadline), "load-" + virtualUser.userId);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        report.setElapsedNanos(System.nanoTime() - start);
+        return report;
+    }
+
+    private Operation nextOperation() {
+        int pick = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private final class VirtualUser {
+        private final String email;
+
+        private final Long userId;
+
+        // Sessions booked or waitlisted, the ones it may cancel
+        private final List<Long> joined;
+
+        private String token;
+
+        private VirtualUser(String email, Long userId, List<Long> joined) {
+            this.email = email;
+            this.userId = userId;
+            this.joined = new ArrayList<>(joined);
+        }
+
+        private void run(LoadReport report, long deadline) {
+            while (System.nanoTime() < deadline) {
+                Operation operation = token == null ? Operation.LOGIN : nextOperation();
+                if (operation == Operation.CANCEL && joined.isEmpty()) {
+                    operation = Operation.PARTICIPATE;
+                }
+
+                HttpRequest request = request(operation);
+                long start = System.nanoTime();
+                try {
+                    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                    report.record(operation, System.nanoTime() - start, response.statusCode());
+                    handle(operation, request, response);
+                } catch (IOException e) {
+                    report.record(operation, System.nanoTime() - start, -1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private HttpRequest request(Operation operation) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            switch (operation) {
+                case LOGIN:
+                    return post("/api/auth/login", "{\"email\":\"" + email + "\",\"password\":\"" + LoadSeeder.PASSWORD + "\"}");
+                case LIST:
+                    return get("/api/session");
+                case DETAIL:
+                    return get("/api/session/" + sessionIds.get(random.nextInt(sessionIds.size())));
+                case PARTICIPATE:
+                    return post("/api/session/" + sessionIds.get(random.nextInt(sessionIds.size())) + "/participate/" + userId, "");
+                case CANCEL:
+                    return builder("/api/session/" + joined.get(random.nextInt(joined.size())) + "/participate/" + userId)
+                            .DELETE().build();
+                default:
+                    throw new IllegalStateException("Unknown operation " + operation);
+            }
+        }
+
+        private void handle(Operation operation, HttpRequest request, HttpResponse<String> response) throws IOException {
+            int status = response.statusCode();
+            if (operation == Operation.LOGIN) {
+                if (status == 200) {
+                    token = (String) objectMapper.readValue(response.body(), Map.class).get("token");
+                }
+            } else if (status == 401) {
+                // Logs in again on its next request
+                token = null;
+            } else if (operation == Operation.PARTICIPATE && (status == 200 || status == 202)) {
+                joined.add(sessionOf(request));
+            } else if (operation == Operation.CANCEL && status == 200) {
+                joined.remove(sessionOf(request));
+            }
+        }
+
+        private Long sessionOf(HttpRequest request) {
+            String[] path = request.uri().getPath().split("/");
+            return Long.valueOf(path[3]);
+        }
+
+        private HttpRequest get(String path) {
+            return builder(path).GET().build();
+        }
+
+        private HttpRequest post(String path, String json) {
+            return builder(path)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(json))
+                    .build();
+        }
+
+        private HttpRequest.Builder builder(String path) {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(baseUri.resolve(path)).timeout(REQUEST_TIMEOUT);
+            if (token != null) {
+                builder.header("Authorization", "Bearer " + token);
+            }
+            return builder;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.openclassrooms.starterjwt.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and outcomes of each operation over one measured run.
+ */
+final class LoadReport {
+    // Microsecond latencies up to one minute, with three significant digits
+    private static final long HIGHEST_LATENCY_US = TimeUnit.MINUTES.toMicros(1);
+
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+
+    private long elapsedNanos;
+
+    LoadReport() {
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    /**
+     * @param status the HTTP status, or {@code -1} when the request failed without a response
+     */
+    void record(Operation operation, long latencyNanos, int status) {
+        Stats operationStats = stats.get(operation);
+        operationStats.latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_LATENCY_US));
+        if (status < 0) {
+            operationStats.errors.increment();
+        } else if (status >= 500) {
+            operationStats.serverErrors.increment();
+        } else if (status >= 400) {
+            operationStats.clientErrors.increment();
+        }
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    void print(PrintStream out) {
+        out.printf("%-45s %9s %9s %9s %9s %9s %9s %7s %7s %7s%n",
+                "Endpoint", "Requests", "Req/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "4xx", "5xx", "errors");
+        long total = 0;
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Histogram latencies = entry.getValue().latencies;
+            total += latencies.getTotalCount();
+            out.printf("%-45s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %7d %7d %7d%n",
+                    entry.getKey().endpoint, latencies.getTotalCount(), throughput(latencies.getTotalCount()),
+                    millis(latencies.getValueAtPercentile(50)), millis(latencies.getValueAtPercentile(99)),
+                    millis(latencies.getValueAtPercentile(99.9)), millis(latencies.getMaxValue()),
+                    entry.getValue().clientErrors.sum(), entry.getValue().serverErrors.sum(),
+                    entry.getValue().errors.sum());
+        }
+        out.printf("%-45s %9d %9.1f%n", "Total", total, throughput(total));
+    }
+
+    void writeJson(File file, LoadSettings settings) throws IOException {
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Histogram latencies = entry.getValue().latencies;
+            Map<String, Object> endpoint = new LinkedHashMap<>();
+            endpoint.put("requests", latencies.getTotalCount());
+            endpoint.put("throughput", throughput(latencies.getTotalCount()));
+            endpoint.put("p50Ms", millis(latencies.getValueAtPercentile(50)));
+            endpoint.put("p99Ms", millis(latencies.getValueAtPercentile(99)));
+            endpoint.put("p999Ms", millis(latencies.getValueAtPercentile(99.9)));
+            endpoint.put("maxMs", millis(latencies.getMaxValue()));
+            endpoint.put("clientErrors", entry.getValue().clientErrors.sum());
+            endpoint.put("serverErrors", entry.getValue().serverErrors.sum());
+            endpoint.put("errors", entry.getValue().errors.sum());
+            endpoints.put(entry.getKey().endpoint, endpoint);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("settings", settings.toString());
+        report.put("durationSeconds", elapsedNanos / 1e9);
+        report.put("endpoints", endpoints);
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, report);
+    }
+
+    private double throughput(long count) {
+        return elapsedNanos > 0 ? count * 1e9 / elapsedNanos : 0;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private static final class Stats {
+        private final Histogram latencies = new ConcurrentHistogram(HIGHEST_LATENCY_US, 3);
+
+        private final LongAdder clientErrors = new LongAdder();
+
+        private final LongAdder serverErrors = new LongAdder();
+
+        private final LongAdder errors = new LongAdder();
+    }
+}
@@ -0,0 +1,94 @@
+package com.openclassrooms.starterjwt.load;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Fills the empty H2 database with the volumes of the settings, in JDBC batches.
+ */
+final class LoadSeeder {
+    static final String PASSWORD = "load!1234";
+
+    private static final int BATCH_SIZE = 1_000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final PasswordEncoder passwordEncoder;
+
+    LoadSeeder(JdbcTemplate jdbcTemplate, PasswordEncoder passwordEncoder) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    static String email(int user) {
+        return "load" + user + "@studio.com";
+    }
+
+    /**
+     * @return the ids of the seeded users and sessions
+     */
+    Seeded seed(LoadSettings settings) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+        insert("INSERT INTO TEACHERS (last_name, first_name, created_at, updated_at) VALUES (?, ?, ?, ?)",
+                settings.teachers, i -> new Object[]{"Teacher " + i, "Load", now, now});
+        List<Long> teacherIds = jdbcTemplate.queryForList("SELECT id FROM TEACHERS ORDER BY id", Long.class);
+
+        // Every user shares one hash, BCrypt would otherwise dominate the seeding
+        String hash = passwordEncoder.encode(PASSWORD);
+        insert("INSERT INTO USERS (email, last_name, first_name, password, admin, created_at, updated_at) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                settings.users, i -> new Object[]{email(i), "User " + i, "Load", hash, false, now, now});
+        List<Long> userIds = jdbcTemplate.queryForList("SELECT id FROM USERS ORDER BY id", Long.class);
+
+        LocalDateTime firstDate = LocalDateTime.now().plusDays(1);
+        insert("INSERT INTO SESSIONS (name, date, description, capacity, teacher_id, created_at, updated_at) "
+                        + "VALUES (?, ?, ?, ?, ?, ?, ?)",
+                settings.sessions, i -> new Object[]{"Session " + i, Timestamp.valueOf(firstDate.plusHours(i)),
+                        "Load test session " + i, settings.capacity, teacherIds.get(i % teacherIds.size()), now, now});
+        List<Long> sessionIds = jdbcTemplate.queryForList("SELECT id FROM SESSIONS ORDER BY id", Long.class);
+
+        // Participants are spread evenly, never more than the capacity or twice the same user in a session
+        int perSession = Math.min(Math.min(settings.capacity, userIds.size()),
+                (settings.participations + sessionIds.size() - 1) / Math.max(sessionIds.size(), 1));
+        int participations = Math.min(settings.participations, perSession * sessionIds.size());
+        insert("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)",
+                participations, i -> {
+                    int session = i / perSession;
+                    return new Object[]{sessionIds.get(session), userIds.get((session * 31 + i % perSession) % userIds.size())};
+                });
+
+        return new Seeded(userIds, sessionIds, participations);
+    }
+
+    private void insert(String sql, int count, IntFunction<Object[]> row) {
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < count; i++) {
+            batch.add(row.apply(i));
+            if (batch.size() == BATCH_SIZE || i == count - 1) {
+                jdbcTemplate.batchUpdate(sql, batch);
+                batch.clear();
+            }
+        }
+    }
+
+    static final class Seeded {
+        final List<Long> userIds;
+
+        final List<Long> sessionIds;
+
+        final int participations;
+
+        Seeded(List<Long> userIds, List<Long> sessionIds, int participations) {
+            this.userIds = userIds;
+            this.sessionIds = sessionIds;
+            this.participations = participations;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.openclassrooms.starterjwt.load;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Volumes and traffic of a load test, read from {@code -Dload.*} system properties.
+ */
+final class LoadSettings {
+    final int teachers = Integer.getInteger("load.teachers", 20);
+
+    final int users = Integer.getInteger("load.users", 1_000);
+
+    final int sessions = Integer.getInteger("load.sessions", 200);
+
+    final int participations = Integer.getInteger("load.participations", 4_000);
+
+    // Seats per session, bookings past it go to the waitlist
+    final int capacity = Integer.getInteger("load.capacity", 30);
+
+    // Each virtual user plays one seeded user, so there are never more of them than users
+    final int threads = Math.min(Integer.getInteger("load.threads", 16), users);
+
+    final int warmupSeconds = Integer.getInteger("load.warmup", 10);
+
+    final int durationSeconds = Integer.getInteger("load.duration", 30);
+
+    final Map<Operation, Integer> mix = parseMix(
+            System.getProperty("load.mix", "login=5,list=20,detail=45,participate=15,cancel=15"));
+
+    final String report = System.getProperty("load.report", "target/load-report.json");
+
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid load.mix entry " + entry);
+            }
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)), Integer.valueOf(parts[1].trim()));
+        }
+        if (weights.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("load.mix has no weight");
+        }
+        return weights;
+    }
+
+    @Override
+    public String toString() {
+        return teachers + " teachers, " + users + " users, " + sessions + " sessions, " + participations
+                + " participations; " + threads + " virtual users, " + warmupSeconds + "s warmup, "
+                + durationSeconds + "s run, mix " + mix;
+    }
+}
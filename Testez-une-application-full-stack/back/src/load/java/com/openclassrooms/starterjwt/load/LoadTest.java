@@ -0,0 +1,50 @@
+package com.openclassrooms.starterjwt.load;
+
+import com.openclassrooms.starterjwt.SpringBootSecurityJwtApplication;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.io.File;
+import java.net.URI;
+
+/**
+ * Starts the application on the in-memory H2 database, seeds it, then reports the latency and
+ * throughput of each endpoint under the configured traffic. Run with {@code mvn -Pload test}.
+ */
+public final class LoadTest {
+    private static final Logger logger = LoggerFactory.getLogger(LoadTest.class);
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadSettings settings = new LoadSettings();
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SpringBootSecurityJwtApplication.class)
+                .profiles("test", "load")
+                .run(args)) {
+            JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+            LoadSeeder.Seeded seeded = new LoadSeeder(jdbcTemplate, context.getBean(PasswordEncoder.class)).seed(settings);
+            logger.info("Seeded {} users, {} sessions and {} participations", seeded.userIds.size(),
+                    seeded.sessionIds.size(), seeded.participations);
+
+            URI baseUri = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port"));
+            LoadDriver driver = new LoadDriver(baseUri, settings, seeded, userId -> jdbcTemplate.queryForList(
+                    "SELECT session_id FROM PARTICIPATE WHERE user_id = ?", Long.class, userId));
+
+            logger.info("Warming up for {}s: {}", settings.warmupSeconds, settings);
+            driver.run(settings.warmupSeconds);
+
+            logger.info("Measuring for {}s", settings.durationSeconds);
+            LoadReport report = driver.run(settings.durationSeconds);
+
+            report.print(System.out);
+            report.writeJson(new File(settings.report), settings);
+            logger.info("Report written to {}", settings.report);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.openclassrooms.starterjwt.load;
+
+/**
+ * Requests a virtual user picks from, weighted by {@code load.mix}.
+ */
+enum Operation {
+    LOGIN("POST /api/auth/login"),
+    LIST("GET /api/session"),
+    DETAIL("GET /api/session/{id}"),
+    PARTICIPATE("POST /api/session/{id}/participate/{userId}"),
+    CANCEL("DELETE /api/session/{id}/participate/{userId}");
+
+    final String endpoint;
+
+    Operation(String endpoint) {
+        this.endpoint = endpoint;
+    }
+}
@@ -0,0 +1,67 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.payload.response.BulkImportResult;
+import com.openclassrooms.starterjwt.services.BulkFormat;
+import com.openclassrooms.starterjwt.services.BulkTable;
+import com.openclassrooms.starterjwt.services.BulkTransferService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.util.Locale;
+
+// Admins only, see WebSecurityConfig
+@CrossOrigin(origins = "*", maxAge = 3600)
+@RestController
+@RequestMapping("/api/bulk")
+public class BulkController {
+    private final BulkTransferService bulkTransferService;
+
+
+    public BulkController(BulkTransferService bulkTransferService) {
+        this.bulkTransferService = bulkTransferService;
+    }
+
+    @GetMapping("/{table}")
+    public ResponseEntity<StreamingResponseBody> export(@PathVariable("table") String table,
+                                                        @RequestParam(value = "format", defaultValue = "ndjson") String format) {
+        try {
+            BulkTable bulkTable = BulkTable.valueOf(table.toUpperCase(Locale.ROOT));
+            BulkFormat bulkFormat = BulkFormat.valueOf(format.toUpperCase(Locale.ROOT));
+
+            StreamingResponseBody body = out -> this.bulkTransferService.export(bulkTable, bulkFormat, out);
+            String fileName = bulkTable.name().toLowerCase(Locale.ROOT) + "." + bulkFormat.getExtension();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(bulkFormat.getMediaType()))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                    .body(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Sent again with the importId of the result, an interrupted import resumes after its last committed batch
+    @PostMapping("/{table}")
+    public ResponseEntity<?> importRows(@PathVariable("table") String table,
+                                        @RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                        @RequestParam(value = "importId", required = false) String importId,
+                                        @RequestParam(value = "batchSize", required = false) String batchSize,
+                                        InputStream body) {
+        try {
+            BulkTable bulkTable = BulkTable.valueOf(table.toUpperCase(Locale.ROOT));
+            BulkFormat bulkFormat = BulkFormat.valueOf(format.toUpperCase(Locale.ROOT));
+            Integer size = batchSize != null ? Integer.valueOf(batchSize) : null;
+
+            BulkImportResult result = this.bulkTransferService.importRows(bulkTable, bulkFormat, body, importId, size);
+            if (result.getError() != null) {
+                return ResponseEntity.badRequest().body(result);
+            }
+            return ResponseEntity.ok().body(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+}
@@ -4,49 +4,230 @@ package com.openclassrooms.starterjwt.controllers;
 import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.payload.request.BulkParticipationRequest;
+import com.openclassrooms.starterjwt.payload.request.GroupParticipationRequest;
+import com.openclassrooms.starterjwt.payload.response.PageResponse;
+import com.openclassrooms.starterjwt.payload.response.SessionChangesResponse;
+import com.openclassrooms.starterjwt.payload.response.WaitlistResponse;
+import com.openclassrooms.starterjwt.services.BookingOutcome;
+import com.openclassrooms.starterjwt.services.SessionExporter;
 import com.openclassrooms.starterjwt.services.SessionService;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
 @RequestMapping("/api/session")
 @Log4j2
 public class SessionController {
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private static final Set<String> SEARCH_SORT_FIELDS = Set.of("date", "name");
+
+    private static final long DEFAULT_SEARCH_WINDOW_MS = TimeUnit.DAYS.toMillis(7);
+
+    // Each delta sync reaches back this far before the previous one, for writes still committing when it ran
+    private static final long SYNC_OVERLAP_MS = TimeUnit.SECONDS.toMillis(5);
+
     private final SessionMapper sessionMapper;
     private final SessionService sessionService;
+    private final SessionExporter sessionExporter;
 
 
     public SessionController(SessionService sessionService,
-                             SessionMapper sessionMapper) {
+                             SessionMapper sessionMapper,
+                             SessionExporter sessionExporter) {
         this.sessionMapper = sessionMapper;
         this.sessionService = sessionService;
+        this.sessionExporter = sessionExporter;
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
+    public ResponseEntity<?> findById(@PathVariable("id") String id, WebRequest request) {
         try {
-            Session session = this.sessionService.getById(Long.valueOf(id));
+            Long sessionId = Long.valueOf(id);
+            String eTag = this.sessionService.getETag(sessionId);
+            if (eTag != null && request.checkNotModified(eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
+
+            Session session = this.sessionService.getById(sessionId);
 
             if (session == null) {
                 return ResponseEntity.notFound().build();
             }
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+            // Rows without updated_at get no ETag
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (eTag != null) {
+                response.eTag(eTag);
+            }
+            return response.body(this.sessionMapper.toDto(session));
         } catch (NumberFormatException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    // Polling clients that already hold the current list get a 304 without any query
     @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Session> sessions = this.sessionService.findAll();
+    public ResponseEntity<?> findAll(WebRequest request) {
+        String eTag = this.sessionService.getListETag();
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        return ResponseEntity.ok().eTag(eTag).body(this.sessionService.findAllSummaries());
+    }
+
+    // Written while the rows are read, for catalogues too large to build as one list
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> export() {
+        StreamingResponseBody body = out -> {
+            int exported = this.sessionExporter.export(out);
+            log.debug("Exported {} sessions", exported);
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @GetMapping(params = {"page", "!cursor"})
+    public ResponseEntity<?> findPage(@RequestParam("page") String page,
+                                      @RequestParam(value = "size", defaultValue = "20") String size) {
+        try {
+            int pageSize = Integer.parseInt(size);
+            int pageNumber = Integer.parseInt(page);
+            if (pageNumber < 0 || pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+                return ResponseEntity.badRequest().build();
+            }
+
+            Page<Session> sessions = this.sessionService.findPage(pageNumber, pageSize);
+
+            return ResponseEntity.ok().body(new PageResponse<>(this.sessionMapper.toDto(sessions.getContent()),
+                    pageSize, pageNumber, sessions.getTotalElements(), null));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping(params = "cursor")
+    public ResponseEntity<?> findAfter(@RequestParam("cursor") String cursor,
+                                       @RequestParam(value = "size", defaultValue = "20") String size) {
+        try {
+            int pageSize = Integer.parseInt(size);
+            if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+                return ResponseEntity.badRequest().build();
+            }
+
+            Date date = null;
+            Long id = null;
+            if (StringUtils.hasText(cursor)) {
+                String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+                if (position.length != 2) {
+                    return ResponseEntity.badRequest().build();
+                }
+                date = new Date(Long.parseLong(position[0]));
+                id = Long.valueOf(position[1]);
+            }
+
+            List<Session> sessions = this.sessionService.findAfter(date, id, pageSize);
 
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions));
+            String nextCursor = null;
+            if (sessions.size() == pageSize) {
+                Session last = sessions.get(sessions.size() - 1);
+                nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(
+                        (last.getDate().getTime() + ":" + last.getId()).getBytes(StandardCharsets.UTF_8));
+            }
+
+            return ResponseEntity.ok().body(new PageResponse<>(this.sessionMapper.toDto(sessions),
+                    pageSize, null, null, nextCursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("changes")
+    public ResponseEntity<?> findChanges(@RequestParam("since") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date since) {
+        Date next = new Date(System.currentTimeMillis() - SYNC_OVERLAP_MS);
+
+        // A full sync reads the listing projection, not one entity and participant list per session
+        if (!this.sessionService.isInChangeLog(since)) {
+            return ResponseEntity.ok().body(new SessionChangesResponse(
+                    this.sessionService.findAllSummaries(), List.of(), true, next));
+        }
+
+        List<Session> updated = this.sessionService.findUpdatedSince(since);
+        List<Long> deleted = this.sessionService.findDeletedSince(since);
+
+        return ResponseEntity.ok().body(new SessionChangesResponse(this.sessionMapper.toDto(updated), deleted, false, next));
+    }
+
+    @GetMapping(value = "search", params = "q")
+    public ResponseEntity<?> searchText(@RequestParam("q") String query,
+                                        @RequestParam(value = "page", defaultValue = "0") String page,
+                                        @RequestParam(value = "size", defaultValue = "20") String size) {
+        try {
+            int pageNumber = Integer.parseInt(page);
+            int pageSize = Integer.parseInt(size);
+            if (pageNumber < 0 || pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+                return ResponseEntity.badRequest().build();
+            }
+
+            Page<Session> sessions = this.sessionService.searchText(query, pageNumber, pageSize);
+
+            return ResponseEntity.ok().body(new PageResponse<>(this.sessionMapper.toDto(sessions.getContent()),
+                    pageSize, pageNumber, sessions.getTotalElements(), null));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping(value = "search", params = "!q")
+    public ResponseEntity<?> search(@RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+                                    @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+                                    @RequestParam(value = "teacherId", required = false) String teacherId,
+                                    @RequestParam(value = "freeSeats", defaultValue = "false") boolean freeSeats,
+                                    @RequestParam(value = "sort", defaultValue = "date") String sort,
+                                    @RequestParam(value = "direction", defaultValue = "asc") String direction,
+                                    @RequestParam(value = "page", defaultValue = "0") String page,
+                                    @RequestParam(value = "size", defaultValue = "20") String size) {
+        try {
+            int pageNumber = Integer.parseInt(page);
+            int pageSize = Integer.parseInt(size);
+            Long teacher = teacherId != null ? Long.valueOf(teacherId) : null;
+            if (pageNumber < 0 || pageSize < 1 || pageSize > MAX_PAGE_SIZE || !SEARCH_SORT_FIELDS.contains(sort)) {
+                return ResponseEntity.badRequest().build();
+            }
+
+            // Defaults to the next 7 days
+            Date windowStart = from != null ? from : new Date();
+            Date windowEnd = to != null ? to : new Date(windowStart.getTime() + DEFAULT_SEARCH_WINDOW_MS);
+            Sort order = Sort.by(Sort.Direction.fromString(direction), sort);
+
+            Page<Session> sessions = this.sessionService.search(windowStart, windowEnd, teacher, freeSeats, order,
+                    pageNumber, pageSize);
+
+            return ResponseEntity.ok().body(new PageResponse<>(this.sessionMapper.toDto(sessions.getContent()),
+                    pageSize, pageNumber, sessions.getTotalElements(), null));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @PostMapping()
@@ -89,7 +270,10 @@ public class SessionController {
     @PostMapping("{id}/participate/{userId}")
     public ResponseEntity<?> participate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
-            this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
+            BookingOutcome outcome = this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
+            if (outcome.getStatus() == BookingOutcome.Status.WAITLISTED) {
+                return ResponseEntity.accepted().body(new WaitlistResponse(outcome.getPosition()));
+            }
 
             return ResponseEntity.ok().build();
         } catch (NumberFormatException e) {
@@ -97,6 +281,26 @@ public class SessionController {
         }
     }
 
+    @PostMapping("participate")
+    public ResponseEntity<?> participateAll(@Valid @RequestBody BulkParticipationRequest request) {
+        return ResponseEntity.ok().body(this.sessionService.participateAll(request.getParticipations()));
+    }
+
+    @PostMapping("{id}/participate")
+    public ResponseEntity<?> participateGroup(@PathVariable("id") String id,
+                                              @Valid @RequestBody GroupParticipationRequest request) {
+        try {
+            Long sessionId = Long.parseLong(id);
+            List<BulkParticipationRequest.Participation> participations = request.getUserIds().stream()
+                    .map(userId -> new BulkParticipationRequest.Participation(sessionId, userId))
+                    .collect(Collectors.toList());
+
+            return ResponseEntity.ok().body(this.sessionService.participateAll(participations));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @DeleteMapping("{id}/participate/{userId}")
     public ResponseEntity<?> noLongerParticipate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
         try {
@@ -107,4 +311,18 @@ public class SessionController {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    @GetMapping("{id}/waitlist/{userId}")
+    public ResponseEntity<?> waitlistPosition(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+        try {
+            Integer position = this.sessionService.getWaitlistPosition(Long.parseLong(id), Long.parseLong(userId));
+            if (position == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            return ResponseEntity.ok().body(new WaitlistResponse(position));
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
 }
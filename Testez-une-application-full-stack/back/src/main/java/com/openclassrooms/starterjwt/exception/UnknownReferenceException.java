@@ -0,0 +1,27 @@
+package com.openclassrooms.starterjwt.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import java.util.Collection;
+
+@ResponseStatus(value= HttpStatus.BAD_REQUEST)
+public class UnknownReferenceException extends RuntimeException {
+    private final Collection<Long> teacherIds;
+
+    private final Collection<Long> userIds;
+
+    public UnknownReferenceException(Collection<Long> teacherIds, Collection<Long> userIds) {
+        super("Unknown teacher ids " + teacherIds + ", unknown user ids " + userIds);
+        this.teacherIds = teacherIds;
+        this.userIds = userIds;
+    }
+
+    public Collection<Long> getTeacherIds() {
+        return teacherIds;
+    }
+
+    public Collection<Long> getUserIds() {
+        return userIds;
+    }
+}
@@ -1,7 +1,9 @@
 package com.openclassrooms.starterjwt.mapper;
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.UnknownReferenceException;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.services.TeacherService;
 import com.openclassrooms.starterjwt.services.UserService;
@@ -9,7 +11,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Component
@@ -27,31 +35,7 @@ public class SessionMapper implements EntityMapper<SessionDto, Session> {
             return null;
         }
 
-        Session session = new Session();
-        session.setId(sessionDto.getId());
-        session.setName(sessionDto.getName());
-        session.setDescription(sessionDto.getDescription());
-        session.setDate(sessionDto.getDate());
-        session.setCreatedAt(sessionDto.getCreatedAt());
-        session.setUpdatedAt(sessionDto.getUpdatedAt());
-
-        // Map teacher
-        if (sessionDto.getTeacher_id() != null) {
-            session.setTeacher(teacherService.findById(sessionDto.getTeacher_id()));
-        }
-
-        // Map users
-        if (sessionDto.getUsers() != null && !sessionDto.getUsers().isEmpty()) {
-            List<User> users = sessionDto.getUsers().stream()
-                    .map(userId -> userService.findById(userId))
-                    .filter(user -> user != null)
-                    .collect(Collectors.toList());
-            session.setUsers(users);
-        } else {
-            session.setUsers(new ArrayList<>());
-        }
-
-        return session;
+        return toEntity(Collections.singletonList(sessionDto)).get(0);
     }
 
     @Override
@@ -64,6 +48,7 @@ public class SessionMapper implements EntityMapper<SessionDto, Session> {
         sessionDto.setId(session.getId());
         sessionDto.setName(session.getName());
         sessionDto.setDescription(session.getDescription());
+        sessionDto.setCapacity(session.getCapacity());
         sessionDto.setDate(session.getDate());
         sessionDto.setCreatedAt(session.getCreatedAt());
         sessionDto.setUpdatedAt(session.getUpdatedAt());
@@ -86,14 +71,46 @@ public class SessionMapper implements EntityMapper<SessionDto, Session> {
         return sessionDto;
     }
 
+    /**
+     * Resolves every teacher and user referenced by the whole list with one query per entity type.
+     *
+     * @throws UnknownReferenceException listing all the ids that do not exist
+     */
     @Override
     public List<Session> toEntity(List<SessionDto> dtoList) {
         if (dtoList == null) {
             return null;
         }
 
+        Set<Long> teacherIds = new LinkedHashSet<>();
+        Set<Long> userIds = new LinkedHashSet<>();
+        for (SessionDto sessionDto : dtoList) {
+            if (sessionDto == null) {
+                continue;
+            }
+            if (sessionDto.getTeacher_id() != null) {
+                teacherIds.add(sessionDto.getTeacher_id());
+            }
+            if (sessionDto.getUsers() != null) {
+                sessionDto.getUsers().stream().filter(Objects::nonNull).forEach(userIds::add);
+            }
+        }
+
+        Map<Long, Teacher> teachers = teacherIds.isEmpty() ? Collections.emptyMap()
+                : teacherService.findAllById(teacherIds).stream()
+                        .collect(Collectors.toMap(Teacher::getId, Function.identity()));
+        Map<Long, User> users = userIds.isEmpty() ? Collections.emptyMap()
+                : userService.findAllById(userIds).stream()
+                        .collect(Collectors.toMap(User::getId, Function.identity()));
+
+        teacherIds.removeAll(teachers.keySet());
+        userIds.removeAll(users.keySet());
+        if (!teacherIds.isEmpty() || !userIds.isEmpty()) {
+            throw new UnknownReferenceException(teacherIds, userIds);
+        }
+
         return dtoList.stream()
-                .map(this::toEntity)
+                .map(sessionDto -> toEntity(sessionDto, teachers, users))
                 .collect(Collectors.toList());
     }
 
@@ -107,4 +124,36 @@ public class SessionMapper implements EntityMapper<SessionDto, Session> {
                 .map(this::toDto)
                 .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+
+    private Session toEntity(SessionDto sessionDto, Map<Long, Teacher> teachers, Map<Long, User> users) {
+        if (sessionDto == null) {
+            return null;
+        }
+
+        Session session = new Session();
+        session.setId(sessionDto.getId());
+        session.setName(sessionDto.getName());
+        session.setDescription(sessionDto.getDescription());
+        session.setCapacity(sessionDto.getCapacity());
+        session.setDate(sessionDto.getDate());
+        session.setCreatedAt(sessionDto.getCreatedAt());
+        session.setUpdatedAt(sessionDto.getUpdatedAt());
+
+        // Map teacher
+        if (sessionDto.getTeacher_id() != null) {
+            session.setTeacher(teachers.get(sessionDto.getTeacher_id()));
+        }
+
+        // Map users
+        if (sessionDto.getUsers() != null && !sessionDto.getUsers().isEmpty()) {
+            session.setUsers(sessionDto.getUsers().stream()
+                    .map(users::get)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList()));
+        } else {
+            session.setUsers(new ArrayList<>());
+        }
+
+        return session;
+    }
+}
@@ -0,0 +1,63 @@
+package com.openclassrooms.starterjwt.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTags;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Counts the SQL statements Hibernate prepares while a request is handled, and records them as
+ * {@code yoga.hibernate.statements}, tagged like {@code http.server.requests}. Statements run
+ * through JDBC directly (booking engine, exports) are not counted.
+ *
+ * <p>Registered as the Hibernate statement inspector by {@link MetricsConfig}; the count is kept
+ * per thread, so only the thread serving the request contributes to it.
+ */
+@Component
+// Before the security filters, so that loading the authenticated user is counted too
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class HibernateStatementMetricsFilter extends OncePerRequestFilter implements StatementInspector {
+    static final String METRIC_NAME = "yoga.hibernate.statements";
+
+    private final ThreadLocal<int[]> statements = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final MeterRegistry meterRegistry;
+
+    public HibernateStatementMetricsFilter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        statements.get()[0]++;
+        return sql;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        int[] count = statements.get();
+        count[0] = 0;
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            DistributionSummary.builder(METRIC_NAME)
+                    .baseUnit("statements")
+                    .tags(Tags.of(WebMvcTags.method(request), WebMvcTags.uri(request, response)))
+                    .register(meterRegistry)
+                    .record(count[0]);
+            count[0] = 0;
+        }
+    }
+}
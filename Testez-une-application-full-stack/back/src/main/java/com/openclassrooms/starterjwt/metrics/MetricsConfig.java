@@ -0,0 +1,32 @@
+package com.openclassrooms.starterjwt.metrics;
+
+import com.openclassrooms.starterjwt.security.crypto.BoundedPasswordEncoder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public HibernatePropertiesCustomizer statementCountingCustomizer(HibernateStatementMetricsFilter statementMetricsFilter) {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, statementMetricsFilter);
+    }
+
+    // The encoder comes from the security configuration, which needs JPA: it is only looked up on the first scrape
+    @Bean
+    public MeterBinder passwordHashingMetrics(ObjectProvider<BoundedPasswordEncoder> passwordEncoder) {
+        return registry -> {
+            Gauge.builder("yoga.password.hashing.queue", () -> passwordEncoder.getObject().getQueueDepth())
+                    .description("Password hashes waiting for a hashing thread")
+                    .register(registry);
+            Gauge.builder("yoga.password.hashing.active", () -> passwordEncoder.getObject().getActiveCount())
+                    .description("Password hashes being computed")
+                    .register(registry);
+        };
+    }
+}
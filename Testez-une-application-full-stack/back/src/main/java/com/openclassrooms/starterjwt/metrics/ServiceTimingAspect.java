@@ -0,0 +1,45 @@
+package com.openclassrooms.starterjwt.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every public method of the session, teacher and user services as {@code yoga.service},
+ * tagged with the class, the method and the exception thrown, if any. Calls from a service to
+ * its own methods do not go through the proxy and are part of the caller's time.
+ */
+@Aspect
+@Component
+public class ServiceTimingAspect {
+    static final String METRIC_NAME = "yoga.service";
+
+    private final MeterRegistry meterRegistry;
+
+    public ServiceTimingAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * com.openclassrooms.starterjwt.services.SessionService.*(..))"
+            + " || execution(public * com.openclassrooms.starterjwt.services.TeacherService.*(..))"
+            + " || execution(public * com.openclassrooms.starterjwt.services.UserService.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(METRIC_NAME)
+                    .tag("class", joinPoint.getSignature().getDeclaringType().getSimpleName())
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("exception", exception)
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.*;
+import lombok.experimental.Accessors;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+/**
+ * Rows of a bulk import committed so far, updated in the transaction of each batch.
+ */
+@Entity
+@Table(name = "BULK_IMPORT_CHECKPOINTS")
+@Data
+@Accessors(chain = true)
+@EqualsAndHashCode(of = {"importId"})
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BulkImportCheckpoint {
+    @Id
+    @Column(name = "import_id", length = 64)
+    private String importId;
+
+    @NotNull
+    @Column(name = "table_name", length = 20)
+    private String tableName;
+
+    @NotNull
+    @Column(name = "rows_committed")
+    private Long rowsCommitted;
+
+    @NotNull
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
@@ -3,11 +3,13 @@ package com.openclassrooms.starterjwt.models;
 
 import lombok.*;
 import lombok.experimental.Accessors;
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.*;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
@@ -16,7 +18,11 @@ import java.util.Date;
 import java.util.List;
 
 @Entity
-@Table(name = "SESSIONS")
+@Table(name = "SESSIONS", indexes = {
+    @Index(name = "idx_sessions_date_id", columnList = "date, id"),
+    @Index(name = "idx_sessions_teacher_date", columnList = "teacher_id, date"),
+    @Index(name = "idx_sessions_updated_at_id", columnList = "updated_at, id")
+})
 @EntityListeners(AuditingEntityListener.class)
 @Data
 @Accessors(chain = true)
@@ -41,15 +47,25 @@ public class Session {
     @Size(max = 2500)
     private String description;
 
+    // null means the session is not limited
+    @Min(1)
+    private Integer capacity;
+
     @OneToOne
     @JoinColumn(name = "teacher_id", referencedColumnName = "id")
     private Teacher teacher;
 
+    // Participants of up to 100 sessions (the largest page) are loaded in a single IN query, so a list of
+    // N sessions takes ceil(N / 100) + 1 statements; unbounded listings read the projections instead
     @ManyToMany(fetch = FetchType.EAGER)
+    @BatchSize(size = 100)
     @JoinTable(
             name = "PARTICIPATE",
             joinColumns = @JoinColumn( name = "session_id" ),
-            inverseJoinColumns = @JoinColumn( name = "user_id" ) )
+            inverseJoinColumns = @JoinColumn( name = "user_id" ),
+            uniqueConstraints = @UniqueConstraint(name = "uk_participate_session_user",
+                    columnNames = {"session_id", "user_id"}),
+            indexes = @Index(name = "idx_participate_user_session", columnList = "user_id, session_id") )
     private List<User> users;
 
     @CreatedDate
@@ -0,0 +1,36 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.*;
+import lombok.experimental.Accessors;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+/**
+ * A deleted session, reported to delta sync clients until it is older than the retention period.
+ */
+@Entity
+@Table(name = "SESSION_TOMBSTONES", indexes = {
+    @Index(name = "idx_session_tombstones_deleted_at", columnList = "deleted_at")
+})
+@Data
+@Accessors(chain = true)
+@EqualsAndHashCode(of = {"id"})
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class SessionTombstone {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @Column(name = "session_id")
+    private Long sessionId;
+
+    @NotNull
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+}
@@ -1,5 +1,6 @@
 package com.openclassrooms.starterjwt.models;
 
+import com.openclassrooms.starterjwt.security.services.UserCacheEvictionListener;
 import lombok.*;
 import lombok.experimental.Accessors;
 import org.hibernate.annotations.UpdateTimestamp;
@@ -17,7 +18,7 @@ import java.time.LocalDateTime;
 })
 @Data
 @Accessors(chain = true)
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, UserCacheEvictionListener.class})
 @EqualsAndHashCode(of = {"id"})
 @Builder
 @NoArgsConstructor
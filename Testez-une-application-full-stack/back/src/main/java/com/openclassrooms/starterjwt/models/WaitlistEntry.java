@@ -0,0 +1,53 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.*;
+import lombok.experimental.Accessors;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A user waiting for a seat in a full session. Rows are written by the booking engine;
+ * the auto-increment id gives the FIFO order.
+ *
+ * <p>The engine reads and writes the table with JDBC; this mapping gives generated schemas
+ * (tests, the embedded H2 profile) the same keys as {@code script.sql}, so that deleting a
+ * session or a user also deletes its waiting rows.
+ */
+@Entity
+@Table(name = "WAITLIST", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_waitlist_session_user", columnNames = {"session_id", "user_id"})
+}, indexes = {
+    @Index(name = "idx_waitlist_session_id", columnList = "session_id, id")
+})
+@EntityListeners(AuditingEntityListener.class)
+@Data
+@Accessors(chain = true)
+@EqualsAndHashCode(of = {"id"})
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString(exclude = {"session", "user"})
+public class WaitlistEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "session_id", foreignKey = @ForeignKey(name = "fk_waitlist_session"))
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private Session session;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", foreignKey = @ForeignKey(name = "fk_waitlist_user"))
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private User user;
+
+    @CreatedDate
+    @Column(name = "created_at", updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,30 @@
+package com.openclassrooms.starterjwt.payload.request;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+public class BulkParticipationRequest {
+  @NotEmpty
+  @Size(max = 1000)
+  private List<@Valid @NotNull Participation> participations;
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Participation {
+    @NotNull
+    private Long sessionId;
+
+    @NotNull
+    private Long userId;
+  }
+}
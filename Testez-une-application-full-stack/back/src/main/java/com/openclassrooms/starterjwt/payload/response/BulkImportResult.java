@@ -0,0 +1,24 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import com.openclassrooms.starterjwt.services.BulkTable;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class BulkImportResult {
+  // Sent again to resume the import after the rows already committed
+  private String importId;
+
+  private BulkTable table;
+
+  // Rows inserted by this request
+  private long imported;
+
+  // Rows of the input committed over every request of the import
+  private long committed;
+
+  // Why the import stopped early, the rows up to committed are kept
+  private String error;
+}
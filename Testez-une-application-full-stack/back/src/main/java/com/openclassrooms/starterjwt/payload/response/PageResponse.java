@@ -0,0 +1,22 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class PageResponse<T> {
+  private List<T> content;
+
+  private int size;
+
+  // Offset pagination only
+  private Integer page;
+
+  private Long totalElements;
+
+  // Keyset pagination only, null on the last page
+  private String nextCursor;
+}
@@ -0,0 +1,26 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class ParticipationResult {
+  public enum Status {
+    BOOKED,
+    WAITLISTED,
+    ALREADY_REGISTERED,
+    NOT_FOUND,
+    // The batch could not be written and was undone, the item can be sent again
+    FAILED
+  }
+
+  private Long sessionId;
+
+  private Long userId;
+
+  private Status status;
+
+  // Waitlisted items only
+  private Integer position;
+}
@@ -0,0 +1,25 @@
+package com.openclassrooms.starterjwt.payload.response;
+
+import java.util.Date;
+import java.util.List;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class SessionChangesResponse {
+  // Sessions created or updated since the last sync, to upsert
+  private List<SessionDto> updated;
+
+  // Ids of the sessions deleted since the last sync
+  private List<Long> deleted;
+
+  // The log no longer reaches back to the last sync: updated holds every session and replaces the local copy
+  private boolean fullSync;
+
+  // The since of the next sync
+  private Date next;
+}
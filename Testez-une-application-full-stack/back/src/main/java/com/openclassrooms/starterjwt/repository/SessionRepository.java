@@ -1,9 +1,75 @@
 package com.openclassrooms.starterjwt.repository;
 
+import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface SessionRepository  extends JpaRepository<Session, Long> {
+    // Listing reads join the teacher instead of selecting it once per session
+    @Override
+    @EntityGraph(attributePaths = "teacher")
+    List<Session> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = "teacher")
+    Page<Session> findAll(Pageable pageable);
+
+    @Override
+    @EntityGraph(attributePaths = "teacher")
+    List<Session> findAllById(Iterable<Long> ids);
+
+    // Delta sync, a range scan on idx_sessions_updated_at_id; participants follow per 100 sessions
+    @EntityGraph(attributePaths = "teacher")
+    List<Session> findByUpdatedAtAfterOrderByUpdatedAtAscIdAsc(LocalDateTime since);
+
+    // Reads the primary key index and one column, for conditional GETs
+    @Query("SELECT s.updatedAt FROM Session s WHERE s.id = :id")
+    Optional<LocalDateTime> findUpdatedAtById(@Param("id") Long id);
+
+    @EntityGraph(attributePaths = "teacher")
+    List<Session> findAllByOrderByDateAscIdAsc(Pageable pageable);
+
+    // Keyset pagination on (date, id), served by idx_sessions_date_id
+    @EntityGraph(attributePaths = "teacher")
+    @Query("SELECT s FROM Session s WHERE s.date > :date OR (s.date = :date AND s.id > :id) ORDER BY s.date, s.id")
+    List<Session> findAfter(@Param("date") Date date, @Param("id") Long id, Pageable pageable);
+
+    // Listing read model: session columns and the teacher foreign key, without hydrating any entity
+    @Query("SELECT new com.openclassrooms.starterjwt.dto.SessionDto(s.id, s.name, s.date, s.teacher.id, s.description, s.capacity, s.createdAt, s.updatedAt) FROM Session s")
+    List<SessionDto> findAllSummaries();
+
+    // (session_id, user_id) pairs read from the join table only, USERS is never touched
+    @Query(value = "SELECT session_id, user_id FROM PARTICIPATE", nativeQuery = true)
+    List<Object[]> findAllParticipantIds();
+
+    // Starts from PARTICIPATE.user_id (idx_participate_user_session), so the cost follows the user's bookings
+    @Query(value = "SELECT s.id, s.name, s.date, s.teacher_id FROM PARTICIPATE p JOIN SESSIONS s ON s.id = p.session_id "
+            + "WHERE p.user_id = :userId AND s.date >= :from AND s.date < :to ORDER BY s.date, s.id", nativeQuery = true)
+    List<Object[]> findSummariesByParticipant(@Param("userId") Long userId, @Param("from") Date from, @Param("to") Date to);
+
+    // Date window search, an index range scan on idx_sessions_date_id; free seats are counted from PARTICIPATE
+    @EntityGraph(attributePaths = "teacher")
+    @Query("SELECT s FROM Session s WHERE s.date >= :from AND s.date < :to "
+            + "AND (:freeSeatsOnly = false OR s.capacity IS NULL OR s.capacity > SIZE(s.users))")
+    Page<Session> search(@Param("from") Date from, @Param("to") Date to,
+                         @Param("freeSeatsOnly") boolean freeSeatsOnly, Pageable pageable);
+
+    // Same search for one teacher, an index range scan on idx_sessions_teacher_date
+    @EntityGraph(attributePaths = "teacher")
+    @Query("SELECT s FROM Session s WHERE s.teacher.id = :teacherId AND s.date >= :from AND s.date < :to "
+            + "AND (:freeSeatsOnly = false OR s.capacity IS NULL OR s.capacity > SIZE(s.users))")
+    Page<Session> searchByTeacher(@Param("teacherId") Long teacherId, @Param("from") Date from, @Param("to") Date to,
+                                  @Param("freeSeatsOnly") boolean freeSeatsOnly, Pageable pageable);
 }
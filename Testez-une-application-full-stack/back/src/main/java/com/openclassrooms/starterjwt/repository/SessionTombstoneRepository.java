@@ -0,0 +1,22 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.SessionTombstone;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SessionTombstoneRepository extends JpaRepository<SessionTombstone, Long> {
+    // Both queries are range scans on idx_session_tombstones_deleted_at
+    @Query("SELECT t.sessionId FROM SessionTombstone t WHERE t.deletedAt > :since")
+    List<Long> findSessionIdsDeletedAfter(@Param("since") LocalDateTime since);
+
+    @Modifying
+    @Query("DELETE FROM SessionTombstone t WHERE t.deletedAt < :before")
+    int deleteDeletedBefore(@Param("before") LocalDateTime before);
+}
@@ -1,6 +1,7 @@
 package com.openclassrooms.starterjwt.security;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -11,9 +12,10 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import com.openclassrooms.starterjwt.security.crypto.BCryptStrengthCalibrator;
+import com.openclassrooms.starterjwt.security.crypto.BoundedPasswordEncoder;
 import com.openclassrooms.starterjwt.security.jwt.AuthEntryPointJwt;
 import com.openclassrooms.starterjwt.security.jwt.AuthTokenFilter;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
@@ -31,6 +33,18 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
   @Autowired
   private AuthEntryPointJwt unauthorizedHandler;
 
+  @Value("${oc.app.bcryptStrength}")
+  private int bcryptStrength;
+
+  @Value("${oc.app.bcryptTargetHashMs}")
+  private long bcryptTargetHashMs;
+
+  @Value("${oc.app.passwordHashingThreads}")
+  private int passwordHashingThreads;
+
+  @Value("${oc.app.passwordHashingQueueCapacity}")
+  private int passwordHashingQueueCapacity;
+
   @Bean
   public AuthTokenFilter authenticationJwtTokenFilter() {
     return new AuthTokenFilter();
@@ -48,8 +62,17 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
   }
 
   @Bean
-  public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+  public BoundedPasswordEncoder passwordEncoder() {
+    // bcryptStrength is the floor; a positive target hash time lets the machine raise it
+    int strength = bcryptTargetHashMs > 0
+        ? BCryptStrengthCalibrator.calibrate(bcryptTargetHashMs, bcryptStrength)
+        : bcryptStrength;
+    int threads = passwordHashingThreads > 0
+        ? passwordHashingThreads
+        : Runtime.getRuntime().availableProcessors();
+
+    return new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength),
+        threads, passwordHashingQueueCapacity);
   }
 
   @Override
@@ -58,6 +81,9 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
       .exceptionHandling().authenticationEntryPoint(unauthorizedHandler).and()
       .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS).and()
       .authorizeRequests().antMatchers("/api/auth/**").permitAll()
+      // Only health and prometheus are exposed; Prometheus scrapes with the bearer token of an admin
+      .antMatchers("/actuator/health").permitAll()
+      .antMatchers(AuthTokenFilter.ADMIN_PATHS).hasRole("ADMIN")
       .antMatchers("/api/**").authenticated()
       .anyRequest().authenticated();
 
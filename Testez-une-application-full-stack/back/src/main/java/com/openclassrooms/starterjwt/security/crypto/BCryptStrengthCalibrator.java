@@ -0,0 +1,43 @@
+package com.openclassrooms.starterjwt.security.crypto;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+/**
+ * Picks the highest BCrypt cost whose hash time on this machine stays within a target.
+ * Each extra cost point doubles the work, so the search stops as soon as the next step
+ * would exceed the target.
+ */
+public final class BCryptStrengthCalibrator {
+  private static final Logger logger = LoggerFactory.getLogger(BCryptStrengthCalibrator.class);
+
+  private static final int MAX_STRENGTH = 31;
+
+  private static final String SAMPLE_PASSWORD = "calibration-password";
+
+  private BCryptStrengthCalibrator() {
+  }
+
+  public static int calibrate(long targetHashMs, int minStrength) {
+    int strength = minStrength;
+    // First run warms up the JIT so it does not skew the measurement
+    measure(strength);
+    long elapsedMs = measure(strength);
+
+    while (strength < MAX_STRENGTH && elapsedMs * 2 <= targetHashMs) {
+      strength++;
+      elapsedMs = measure(strength);
+    }
+
+    logger.info("BCrypt strength calibrated to {} ({} ms per hash, target {} ms)", strength, elapsedMs, targetHashMs);
+    return strength;
+  }
+
+  private static long measure(int strength) {
+    BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+    long start = System.nanoTime();
+    encoder.encode(SAMPLE_PASSWORD);
+    return (System.nanoTime() - start) / 1_000_000;
+  }
+}
@@ -1,6 +1,8 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.stream.Collectors;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -14,18 +16,41 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
+import io.jsonwebtoken.Claims;
+
 public class AuthTokenFilter extends OncePerRequestFilter {
+  /**
+   * Paths restricted to admins. Their principal is always read from the cache or the database, so
+   * that the admin flag of a self-contained token cannot outlive a change to the user.
+   */
+  public static final String[] ADMIN_PATHS = {"/actuator/prometheus", "/api/bulk/**", "/api/session/export"};
+
+  private static final RequestMatcher ADMIN_REQUESTS = new OrRequestMatcher(Arrays.stream(ADMIN_PATHS)
+      .map(AntPathRequestMatcher::new)
+      .collect(Collectors.toList()));
+
   @Autowired
   private JwtUtils jwtUtils;
 
   @Autowired
   private UserDetailsServiceImpl userDetailsService;
 
+  @Autowired
+  private UserDetailsCache userDetailsCache;
+
+  @Autowired
+  private TokenRevocationRegistry tokenRevocationRegistry;
+
   private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
   @Override
@@ -33,18 +58,31 @@ public class AuthTokenFilter extends OncePerRequestFilter {
       throws ServletException, IOException {
     try {
       String jwt = parseJwt(request);
-      if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-        String username = jwtUtils.getUserNameFromJwtToken(jwt);
-
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-        UsernamePasswordAuthenticationToken authentication =
-            new UsernamePasswordAuthenticationToken(
-                userDetails,
-                null,
-                userDetails.getAuthorities());
-        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-        SecurityContextHolder.getContext().setAuthentication(authentication);
+      Claims claims = jwt != null ? jwtUtils.getClaimsFromJwtToken(jwt) : null;
+      if (claims != null) {
+        String username = claims.getSubject();
+
+        UserDetails userDetails = jwtUtils.isSelfContained() && !ADMIN_REQUESTS.matches(request)
+            ? jwtUtils.getUserDetailsFromClaims(claims)
+            : null;
+        if (userDetails == null) {
+          userDetails = userDetailsCache.getUserFromCache(username);
+        }
+        if (userDetails == null) {
+          userDetails = userDetailsService.loadUserByUsername(username);
+          userDetailsCache.putUserInCache(userDetails);
+        }
+
+        if (!isRevoked(userDetails, claims)) {
+          UsernamePasswordAuthenticationToken authentication =
+              new UsernamePasswordAuthenticationToken(
+                  userDetails,
+                  null,
+                  userDetails.getAuthorities());
+          authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+          SecurityContextHolder.getContext().setAuthentication(authentication);
+        }
       }
     } catch (Exception e) {
       logger.error("Cannot set user authentication: {}", e);
@@ -53,6 +91,11 @@ public class AuthTokenFilter extends OncePerRequestFilter {
     filterChain.doFilter(request, response);
   }
 
+  private boolean isRevoked(UserDetails userDetails, Claims claims) {
+    return userDetails instanceof UserDetailsImpl
+        && tokenRevocationRegistry.isRevoked(((UserDetailsImpl) userDetails).getId(), claims.getIssuedAt());
+  }
+
   public String parseJwt(HttpServletRequest request) {
     String headerAuth = request.getHeader("Authorization");
 
@@ -1,7 +1,11 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
+import java.security.Key;
 import java.util.Date;
 
+import javax.annotation.PostConstruct;
+import javax.crypto.spec.SecretKeySpec;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -11,37 +15,101 @@ import org.springframework.stereotype.Component;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 
 import io.jsonwebtoken.*;
+import io.jsonwebtoken.impl.TextCodec;
 
 @Component
 public class JwtUtils {
   private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
+  private static final SignatureAlgorithm SIGNATURE_ALGORITHM = SignatureAlgorithm.HS512;
+
+  private static final String ID_CLAIM = "id";
+  private static final String FIRST_NAME_CLAIM = "firstName";
+  private static final String LAST_NAME_CLAIM = "lastName";
+  private static final String ADMIN_CLAIM = "admin";
+
   @Value("${oc.app.jwtSecret}")
   private String jwtSecret;
 
   @Value("${oc.app.jwtExpirationMs}")
   private int jwtExpirationMs;
 
+  @Value("${oc.app.jwtSelfContained}")
+  private boolean jwtSelfContained;
+
+  private Key signingKey;
+
+  private JwtParser jwtParser;
+
+  // The secret is decoded and the parser built once, instead of on every sign/parse call
+  @PostConstruct
+  public void init() {
+    signingKey = new SecretKeySpec(TextCodec.BASE64.decode(jwtSecret), SIGNATURE_ALGORITHM.getJcaName());
+    jwtParser = Jwts.parser().setSigningKey(signingKey);
+  }
+
   public String generateJwtToken(Authentication authentication) {
 
     UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
 
-    return Jwts.builder()
+    Date now = new Date();
+    JwtBuilder builder = Jwts.builder()
         .setSubject((userPrincipal.getUsername()))
-        .setIssuedAt(new Date())
-        .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-        .signWith(SignatureAlgorithm.HS512, jwtSecret)
-        .compact();
+        .setIssuedAt(now)
+        .setExpiration(new Date(now.getTime() + jwtExpirationMs));
+
+    if (jwtSelfContained) {
+      builder
+          .claim(ID_CLAIM, userPrincipal.getId())
+          .claim(FIRST_NAME_CLAIM, userPrincipal.getFirstName())
+          .claim(LAST_NAME_CLAIM, userPrincipal.getLastName())
+          .claim(ADMIN_CLAIM, Boolean.TRUE.equals(userPrincipal.getAdmin()));
+    }
+
+    return builder.signWith(SIGNATURE_ALGORITHM, signingKey).compact();
+  }
+
+  public boolean isSelfContained() {
+    return jwtSelfContained;
+  }
+
+  /**
+   * Rebuilds the principal from a self-contained token, without loading the user.
+   *
+   * @return the principal, or {@code null} if the token does not carry the user claims
+   */
+  public UserDetailsImpl getUserDetailsFromClaims(Claims claims) {
+    Long id = claims.get(ID_CLAIM, Long.class);
+    if (id == null) {
+      return null;
+    }
+
+    return UserDetailsImpl
+        .builder()
+        .id(id)
+        .username(claims.getSubject())
+        .firstName(claims.get(FIRST_NAME_CLAIM, String.class))
+        .lastName(claims.get(LAST_NAME_CLAIM, String.class))
+        .admin(claims.get(ADMIN_CLAIM, Boolean.class))
+        .build();
   }
 
   public String getUserNameFromJwtToken(String token) {
-    return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
+    return jwtParser.parseClaimsJws(token).getBody().getSubject();
   }
 
   public boolean validateJwtToken(String authToken) {
+    return getClaimsFromJwtToken(authToken) != null;
+  }
+
+  /**
+   * Verifies the token signature and expiration once and returns its claims.
+   *
+   * @return the token claims, or {@code null} if the token is not valid
+   */
+  public Claims getClaimsFromJwtToken(String authToken) {
     try {
-      Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-      return true;
+      return jwtParser.parseClaimsJws(authToken).getBody();
     } catch (SignatureException e) {
       logger.error("Invalid JWT signature: {}", e.getMessage());
     } catch (MalformedJwtException e) {
@@ -54,6 +122,6 @@ public class JwtUtils {
       logger.error("JWT claims string is empty: {}", e.getMessage());
     }
 
-    return false;
+    return null;
   }
 }
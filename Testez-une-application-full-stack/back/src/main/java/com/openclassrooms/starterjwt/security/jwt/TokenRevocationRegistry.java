@@ -0,0 +1,437 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongConsumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Ids of deleted users, with the time of deletion, so that the tokens issued to them before
+ * it no longer authenticate even though their signature and expiration are still valid.
+ *
+ * <p>Lookups go through a Bloom filter first, so the common "not revoked" answer costs a
+ * few array reads; only possible hits are confirmed against an exact open-addressing map
+ * of primitive longs. Neither path allocates nor takes a lock. The exact map is written to
+ * a delta-encoded snapshot on disk and reloaded on startup.
+ *
+ * <p>A token is revoked when its {@code iat} falls in an earlier second than the revocation,
+ * JWT times having a one second resolution: a token issued after the user id was reused by a
+ * bulk import is accepted, while one issued in the very second of the deletion, before it, is
+ * too. Entries older than the token lifetime can no longer match a live token and are pruned,
+ * which also rebuilds the Bloom filter.
+ */
+@Component
+public class TokenRevocationRegistry {
+  private static final Logger logger = LoggerFactory.getLogger(TokenRevocationRegistry.class);
+
+  private static final int SNAPSHOT_MAGIC = 0x52564B32; // "RVK2"
+
+  // Snapshots of ids only, written before revocation times were kept
+  private static final int LEGACY_SNAPSHOT_MAGIC = 0x52564B31; // "RVK1"
+
+  private static final double FALSE_POSITIVE_RATE = 0.01;
+
+  private final int expectedEntries;
+
+  private volatile BloomFilter bloomFilter;
+
+  private final LongLongMap revocationTimes;
+
+  private final long tokenLifetimeMs;
+
+  private final Path snapshotPath;
+
+  private final long snapshotIntervalMs;
+
+  private final AtomicBoolean dirty = new AtomicBoolean();
+
+  private ScheduledExecutorService maintenanceScheduler;
+
+  public TokenRevocationRegistry(@Value("${oc.app.revocationExpectedEntries}") int expectedEntries,
+      @Value("${oc.app.jwtExpirationMs}") long tokenLifetimeMs,
+      @Value("${oc.app.revocationSnapshotPath}") String snapshotPath,
+      @Value("${oc.app.revocationSnapshotIntervalMs}") long snapshotIntervalMs) {
+    this.expectedEntries = expectedEntries;
+    this.bloomFilter = new BloomFilter(expectedEntries, FALSE_POSITIVE_RATE);
+    this.revocationTimes = new LongLongMap();
+    this.tokenLifetimeMs = tokenLifetimeMs;
+    this.snapshotPath = StringUtils.hasText(snapshotPath) ? Paths.get(snapshotPath) : null;
+    this.snapshotIntervalMs = snapshotIntervalMs;
+  }
+
+  @PostConstruct
+  public void init() throws IOException {
+    if (snapshotPath != null && Files.exists(snapshotPath)) {
+      long[] entries = readSnapshot(snapshotPath, System.currentTimeMillis());
+      for (int i = 0; i < entries.length; i += 2) {
+        add(entries[i], entries[i + 1]);
+      }
+      prune(System.currentTimeMillis());
+      logger.info("Loaded {} revoked users from {}", revocationTimes.size(), snapshotPath);
+    }
+
+    maintenanceScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "token-revocation-maintenance");
+      thread.setDaemon(true);
+      return thread;
+    });
+    maintenanceScheduler.scheduleWithFixedDelay(this::maintain,
+        snapshotIntervalMs, snapshotIntervalMs, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  public void close() {
+    if (maintenanceScheduler != null) {
+      maintenanceScheduler.shutdown();
+    }
+    snapshotIfDirty();
+  }
+
+  public void revoke(Long userId) {
+    revoke(userId, System.currentTimeMillis());
+  }
+
+  // User ids are positive, which lets 0 mark an empty slot in the exact map
+  public void revoke(Long userId, long revokedAt) {
+    if (userId == null || userId <= 0) {
+      return;
+    }
+
+    add(userId, revokedAt);
+    dirty.set(true);
+  }
+
+  /**
+   * @param issuedAt the {@code iat} of the token; a token without one is taken as revoked if the user is
+   */
+  public boolean isRevoked(Long userId, Date issuedAt) {
+    if (userId == null) {
+      return false;
+    }
+
+    long id = userId;
+    if (id <= 0 || !bloomFilter.mightContain(id)) {
+      return false;
+    }
+
+    long revokedAt = revocationTimes.get(id);
+    if (revokedAt == LongLongMap.ABSENT) {
+      return false;
+    }
+    return issuedAt == null || issuedAt.getTime() / 1000 < revokedAt / 1000;
+  }
+
+  public int size() {
+    return revocationTimes.size();
+  }
+
+  /**
+   * Drops the users revoked more than a token lifetime before {@code now}: every token issued to them
+   * before the revocation has expired since.
+   *
+   * @return the number of users dropped
+   */
+  public synchronized int prune(long now) {
+    int pruned = revocationTimes.removeOlderThan(now - tokenLifetimeMs);
+    if (pruned > 0) {
+      BloomFilter rebuilt = new BloomFilter(expectedEntries, FALSE_POSITIVE_RATE);
+      revocationTimes.forEachKey(rebuilt::put);
+      bloomFilter = rebuilt;
+      dirty.set(true);
+    }
+    return pruned;
+  }
+
+  public void snapshot() throws IOException {
+    if (snapshotPath == null) {
+      return;
+    }
+
+    dirty.set(false);
+    long[] entries = revocationTimes.toSortedArray();
+
+    Path parent = snapshotPath.toAbsolutePath().getParent();
+    Files.createDirectories(parent);
+    Path tmp = Files.createTempFile(parent, snapshotPath.getFileName().toString(), ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+      out.writeInt(SNAPSHOT_MAGIC);
+      writeVarLong(out, entries.length / 2);
+      long previous = 0;
+      for (int i = 0; i < entries.length; i += 2) {
+        writeVarLong(out, entries[i] - previous);
+        writeVarLong(out, entries[i + 1]);
+        previous = entries[i];
+      }
+    }
+    Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  // The exact map is written before the Bloom filter, so a reader that sees the bits also sees the id.
+  // Serialised with prune, so that a rebuilt filter never misses an id added meanwhile
+  private synchronized void add(long userId, long revokedAt) {
+    revocationTimes.put(userId, revokedAt);
+    bloomFilter.put(userId);
+  }
+
+  private void maintain() {
+    prune(System.currentTimeMillis());
+    snapshotIfDirty();
+  }
+
+  private void snapshotIfDirty() {
+    if (!dirty.get()) {
+      return;
+    }
+
+    try {
+      snapshot();
+    } catch (IOException e) {
+      dirty.set(true);
+      logger.error("Cannot write token revocation snapshot: {}", e.getMessage());
+    }
+  }
+
+  // Interleaved user ids and revocation times; ids of a legacy snapshot are taken as revoked at loadedAt
+  private static long[] readSnapshot(Path path, long loadedAt) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      int magic = in.readInt();
+      if (magic != SNAPSHOT_MAGIC && magic != LEGACY_SNAPSHOT_MAGIC) {
+        throw new IOException("Not a token revocation snapshot: " + path);
+      }
+
+      long[] entries = new long[(int) readVarLong(in) * 2];
+      long previous = 0;
+      for (int i = 0; i < entries.length; i += 2) {
+        previous += readVarLong(in);
+        entries[i] = previous;
+        entries[i + 1] = magic == SNAPSHOT_MAGIC ? readVarLong(in) : loadedAt;
+      }
+      return entries;
+    }
+  }
+
+  private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+    while ((value & ~0x7FL) != 0) {
+      out.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    out.writeByte((int) value);
+  }
+
+  private static long readVarLong(DataInputStream in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed token revocation snapshot");
+  }
+
+  // SplitMix64 finalizer: spreads sequential ids over the whole 64-bit range
+  private static long mix(long value) {
+    value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+    value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+    return value ^ (value >>> 31);
+  }
+
+  private static final class BloomFilter {
+    private final AtomicLongArray bits;
+
+    private final long bitCount;
+
+    private final int hashCount;
+
+    BloomFilter(int expectedEntries, double falsePositiveRate) {
+      long n = Math.max(expectedEntries, 1);
+      long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+      int words = (int) Math.max(1, (m + 63) >>> 6);
+      this.bits = new AtomicLongArray(words);
+      this.bitCount = (long) words << 6;
+      this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+    }
+
+    void put(long value) {
+      long hash = mix(value);
+      int h1 = (int) hash;
+      int h2 = (int) (hash >>> 32);
+      for (int i = 0; i < hashCount; i++) {
+        long bit = index(h1 + (long) i * h2);
+        int word = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long current;
+        do {
+          current = bits.get(word);
+        } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+      }
+    }
+
+    boolean mightContain(long value) {
+      long hash = mix(value);
+      int h1 = (int) hash;
+      int h2 = (int) (hash >>> 32);
+      for (int i = 0; i < hashCount; i++) {
+        long bit = index(h1 + (long) i * h2);
+        if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private long index(long combinedHash) {
+      return (combinedHash & Long.MAX_VALUE) % bitCount;
+    }
+  }
+
+  /**
+   * Map of positive longs to positive longs, keys and values interleaved in one array and grown by
+   * doubling. Writers are serialised; readers never lock and see either the previous or the rebuilt
+   * table, both of which hold every entry they were given and not removed.
+   */
+  private static final class LongLongMap {
+    static final long ABSENT = 0L;
+
+    private static final long EMPTY = 0L;
+
+    private volatile AtomicLongArray table;
+
+    private int size;
+
+    LongLongMap() {
+      this.table = new AtomicLongArray(32);
+    }
+
+    // A later revocation of the same user moves its time forward
+    synchronized void put(long key, long value) {
+      if (insert(table, key, value)) {
+        size++;
+        if (size * 2 > capacity(table)) {
+          table = copy(table, capacity(table) * 2, Long.MIN_VALUE);
+        }
+      }
+    }
+
+    long get(long key) {
+      AtomicLongArray current = table;
+      int mask = capacity(current) - 1;
+      for (int i = (int) mix(key) & mask; ; i = (i + 1) & mask) {
+        long slot = current.get(2 * i);
+        if (slot == key) {
+          return current.get(2 * i + 1);
+        }
+        if (slot == EMPTY) {
+          return ABSENT;
+        }
+      }
+    }
+
+    // Open addressing cannot clear a slot in place, so the kept entries go to a new table
+    synchronized int removeOlderThan(long cutoff) {
+      AtomicLongArray rebuilt = copy(table, capacity(table), cutoff);
+      int removed = size;
+      size = 0;
+      for (int i = 0; i < capacity(rebuilt); i++) {
+        if (rebuilt.get(2 * i) != EMPTY) {
+          size++;
+        }
+      }
+      removed -= size;
+      if (removed > 0) {
+        table = rebuilt;
+      }
+      return removed;
+    }
+
+    synchronized void forEachKey(LongConsumer action) {
+      for (int i = 0; i < capacity(table); i++) {
+        long key = table.get(2 * i);
+        if (key != EMPTY) {
+          action.accept(key);
+        }
+      }
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    // Interleaved keys and values, by increasing key
+    synchronized long[] toSortedArray() {
+      long[] keys = new long[size];
+      int j = 0;
+      for (int i = 0; i < capacity(table); i++) {
+        long key = table.get(2 * i);
+        if (key != EMPTY) {
+          keys[j++] = key;
+        }
+      }
+      Arrays.sort(keys);
+      long[] entries = new long[keys.length * 2];
+      for (int i = 0; i < keys.length; i++) {
+        entries[2 * i] = keys[i];
+        entries[2 * i + 1] = get(keys[i]);
+      }
+      return entries;
+    }
+
+    private static int capacity(AtomicLongArray target) {
+      return target.length() / 2;
+    }
+
+    private static AtomicLongArray copy(AtomicLongArray source, int capacity, long cutoff) {
+      AtomicLongArray copy = new AtomicLongArray(capacity * 2);
+      for (int i = 0; i < capacity(source); i++) {
+        long key = source.get(2 * i);
+        long value = source.get(2 * i + 1);
+        if (key != EMPTY && value >= cutoff) {
+          insert(copy, key, value);
+        }
+      }
+      return copy;
+    }
+
+    // The value is written before the key, so a reader that finds the key also finds its value
+    private static boolean insert(AtomicLongArray target, long key, long value) {
+      int mask = capacity(target) - 1;
+      for (int i = (int) mix(key) & mask; ; i = (i + 1) & mask) {
+        long slot = target.get(2 * i);
+        if (slot == key) {
+          if (value > target.get(2 * i + 1)) {
+            target.set(2 * i + 1, value);
+          }
+          return false;
+        }
+        if (slot == EMPTY) {
+          target.set(2 * i + 1, value);
+          target.set(2 * i, key);
+          return true;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import javax.persistence.PostUpdate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.openclassrooms.starterjwt.models.User;
+
+public class UserCacheEvictionListener {
+  @Autowired
+  private UserDetailsCache userDetailsCache;
+
+  // Keeps cached principals in line with admin flag, email or password changes
+  @PostUpdate
+  public void evict(User user) {
+    userDetailsCache.removeUserFromCacheById(user.getId());
+  }
+}
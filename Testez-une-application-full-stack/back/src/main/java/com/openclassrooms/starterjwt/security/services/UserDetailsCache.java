@@ -0,0 +1,77 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.time.Duration;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Bounded cache of authenticated principals, keyed by email, so that requests carrying
+ * a valid token do not hit the USERS table each time.
+ */
+@Component
+public class UserDetailsCache implements UserCache, MeterBinder {
+  private final Cache<String, UserDetails> cache;
+
+  public UserDetailsCache(@Value("${oc.app.userCacheMaxSize}") long maxSize,
+      @Value("${oc.app.userCacheTtlMs}") long ttlMs) {
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(Duration.ofMillis(ttlMs))
+        .recordStats()
+        .build();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, cache, "user_details");
+  }
+
+  @Override
+  public UserDetails getUserFromCache(String username) {
+    return cache.getIfPresent(username);
+  }
+
+  @Override
+  public void putUserInCache(UserDetails user) {
+    cache.put(user.getUsername(), user);
+  }
+
+  @Override
+  public void removeUserFromCache(String username) {
+    cache.invalidate(username);
+  }
+
+  // Entries are keyed by email, so evicting by id scans the cache; this only runs on user writes
+  public void removeUserFromCacheById(Long userId) {
+    cache.asMap().values().removeIf(user ->
+        user instanceof UserDetailsImpl && Objects.equals(((UserDetailsImpl) user).getId(), userId));
+  }
+
+  // Users written in bulk may take the email or id of cached ones
+  public void removeAllUsersFromCache() {
+    cache.invalidateAll();
+  }
+
+  public long getHitCount() {
+    return cache.stats().hitCount();
+  }
+
+  public long getMissCount() {
+    return cache.stats().missCount();
+  }
+
+  public long getSize() {
+    return cache.estimatedSize();
+  }
+}
@@ -0,0 +1,798 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Accepts bookings in memory and writes them to PARTICIPATE and WAITLIST behind the request.
+ *
+ * <p>Each session keeps an atomic seat counter, the set of its participants and a FIFO waitlist,
+ * loaded from the database on first use. A seat is reserved with a compare-and-set before the
+ * participant is added and released after it is removed, so the counter never drops below the real
+ * number of participants and a session is never over-booked. Only a full session takes the
+ * waitlist lock: joining the waitlist and releasing a seat are serialised there, so a seat freed by
+ * a cancellation goes to the head of the waitlist instead of being lost or taken by a newcomer.
+ *
+ * <p>The state of a session is dropped when the session is written through another path, so it is
+ * reloaded from the database. Every change to a state happens under its read lock and eviction
+ * retires the state under the write lock: a booker still holding a retired state retries on the
+ * reloaded one, and the reload only reads the database once the writes of the retired state are
+ * queued, so the two copies never hand out the same seat twice.
+ *
+ * <p>Writes are queued in the order the participant set changed and flushed in JDBC batches, one
+ * transaction per flush; a cancellation and the promotion it triggers are never split across two
+ * flushes. When a flush fails its writes are tried one by one, in order:
+ * <ul>
+ *   <li>a write the database cannot take now (connection lost, lock timeout) is kept, with every
+ *   write queued after it, and tried again by the next flush, until it succeeds; a session with
+ *   writes waiting for a retry cannot be reloaded meanwhile;</li>
+ *   <li>a write that breaks a constraint is dropped and its session reloaded from the database. A
+ *   duplicate row means the write was already there; any other violation, such as a user or
+ *   session deleted since, loses a booking that was already answered, and is counted in
+ *   {@code yoga.bookings.lost.writes}.</li>
+ * </ul>
+ * Every accepted booking is therefore written at least once unless the database rejects it for
+ * good, or the application stops while the database is unreachable.
+ */
+@Service
+public class BookingEngine {
+    private static final Logger logger = LoggerFactory.getLogger(BookingEngine.class);
+
+    private static final String INSERT_PARTICIPANT = "INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)";
+
+    private static final String DELETE_PARTICIPANT = "DELETE FROM PARTICIPATE WHERE session_id = ? AND user_id = ?";
+
+    private static final String INSERT_WAITLIST = "INSERT INTO WAITLIST (session_id, user_id) VALUES (?, ?)";
+
+    private static final String DELETE_WAITLIST = "DELETE FROM WAITLIST WHERE session_id = ? AND user_id = ?";
+
+    private static final String TOUCH_SESSION = "UPDATE SESSIONS SET updated_at = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ResourceVersions resourceVersions;
+
+    private final long flushIntervalMs;
+
+    private final ConcurrentHashMap<Long, SessionSeats> sessions = new ConcurrentHashMap<>();
+
+    // Incremented by each eviction, so that a load racing with one is read again
+    private final AtomicLong evictions = new AtomicLong();
+
+    // Sessions being deleted, which no load may read back meanwhile
+    private final Set<Long> removing = ConcurrentHashMap.newKeySet();
+
+    private final Queue<PendingWrite> pendingWrites = new ConcurrentLinkedQueue<>();
+
+    // Writes of an earlier flush the database could not take, written first by the next one
+    private final Queue<PendingWrite> retryWrites = new ConcurrentLinkedQueue<>();
+
+    private final AtomicLong lostWrites = new AtomicLong();
+
+    // Writers that queue several statements hold the read side, so a flush never drains half of them
+    private final ReadWriteLock drainLock = new ReentrantReadWriteLock();
+
+    private ScheduledExecutorService flushScheduler;
+
+    public BookingEngine(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                         ResourceVersions resourceVersions,
+                         @Value("${oc.app.bookingFlushIntervalMs}") long flushIntervalMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.resourceVersions = resourceVersions;
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    @PostConstruct
+    public void init() {
+        flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "booking-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushScheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (flushScheduler != null) {
+            flushScheduler.shutdown();
+        }
+        flushQuietly();
+        if (!retryWrites.isEmpty()) {
+            lostWrites.addAndGet(retryWrites.size());
+            logger.error("Stopping with {} booking writes the database did not take", retryWrites.size());
+        }
+    }
+
+    /**
+     * Books a seat, or puts the user at the end of the waitlist when the session is full.
+     *
+     * @return {@link BookingOutcome#BOOKED}, or a waitlisted outcome with the position of the user
+     */
+    public BookingOutcome book(Long sessionId, Long userId) {
+        return withSeats(sessionId, seats -> book(seats, sessionId, userId, pendingWrites));
+    }
+
+    // Writes go to the write-behind queue, or to the batch of bookAll
+    private BookingOutcome book(SessionSeats seats, Long sessionId, Long userId, Collection<PendingWrite> writes) {
+        if (seats.participants.containsKey(userId)) {
+            throw new BadRequestException();
+        }
+        if (seats.tryReserve()) {
+            addParticipant(seats, sessionId, userId, writes);
+            return BookingOutcome.BOOKED;
+        }
+
+        synchronized (seats.waitlist) {
+            // A seat may have been released since; releases happen under this lock
+            if (seats.tryReserve()) {
+                addParticipant(seats, sessionId, userId, writes);
+                return BookingOutcome.BOOKED;
+            }
+            if (seats.participants.containsKey(userId) || !seats.waitlist.add(userId)) {
+                throw new BadRequestException();
+            }
+            enqueue(writes, new PendingWrite(INSERT_WAITLIST, sessionId, userId));
+            return BookingOutcome.waitlisted(seats.waitlist.position(userId));
+        }
+    }
+
+    /**
+     * Books a batch of users as {@link #book} would, then writes the batch in a transaction of its own,
+     * so that a booking is only reported once written. The sessions of the batch are locked meanwhile and
+     * the writes queued before it are flushed first, so no other write of these sessions comes in between.
+     * When the transaction fails, the whole batch is undone in memory.
+     *
+     * @return per item, in order: booked or waitlisted, else {@link BookingOutcome#SESSION_NOT_FOUND},
+     * {@link BookingOutcome#ALREADY_REGISTERED}, or {@link BookingOutcome#NOT_WRITTEN} when the batch
+     * could not be written
+     */
+    public synchronized List<BookingOutcome> bookAll(List<Long> sessionIds, List<Long> userIds) {
+        BookingOutcome[] outcomes = new BookingOutcome[sessionIds.size()];
+        Map<Long, BookingOutcome> unavailable = new HashMap<>();
+        Map<Long, SessionSeats> locked = lockAll(new TreeSet<>(sessionIds), unavailable);
+        try {
+            List<PendingWrite> writes = new ArrayList<>();
+            List<Integer> reserved = new ArrayList<>();
+            for (int i = 0; i < outcomes.length; i++) {
+                Long sessionId = sessionIds.get(i);
+                if (unavailable.containsKey(sessionId)) {
+                    outcomes[i] = unavailable.get(sessionId);
+                    continue;
+                }
+                try {
+                    outcomes[i] = book(locked.get(sessionId), sessionId, userIds.get(i), writes);
+                    reserved.add(i);
+                } catch (BadRequestException e) {
+                    outcomes[i] = BookingOutcome.ALREADY_REGISTERED;
+                }
+            }
+            if (writes.isEmpty()) {
+                return Arrays.asList(outcomes);
+            }
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    batches(writes).forEach(this::writeBatch);
+                    touchSessions(bookedSessionIds(writes));
+                });
+            } catch (DataAccessException e) {
+                logger.warn("Cannot write a batch of {} bookings, undoing it: {}", writes.size(), e.getMessage());
+                for (Integer i : reserved) {
+                    unbook(locked.get(sessionIds.get(i)), userIds.get(i));
+                    outcomes[i] = BookingOutcome.NOT_WRITTEN;
+                }
+                return Arrays.asList(outcomes);
+            }
+            writes.stream().map(write -> write.sessionId).distinct().forEach(resourceVersions.sessions()::changed);
+            return Arrays.asList(outcomes);
+        } finally {
+            unlockAll(locked);
+        }
+    }
+
+    // Takes the write lock of the live state of each session, in id order, then flushes what was queued before
+    private Map<Long, SessionSeats> lockAll(Set<Long> sessionIds, Map<Long, BookingOutcome> unavailable) {
+        while (true) {
+            Map<Long, SessionSeats> locked = new HashMap<>();
+            unavailable.clear();
+            try {
+                for (Long sessionId : sessionIds) {
+                    try {
+                        SessionSeats seats = seatsOf(sessionId);
+                        seats.lock.writeLock().lock();
+                        locked.put(sessionId, seats);
+                    } catch (NotFoundException e) {
+                        unavailable.put(sessionId, BookingOutcome.SESSION_NOT_FOUND);
+                    } catch (ServiceUnavailableException e) {
+                        unavailable.put(sessionId, BookingOutcome.NOT_WRITTEN);
+                    }
+                }
+                flush();
+            } catch (RuntimeException e) {
+                unlockAll(locked);
+                throw e;
+            }
+
+            // A write of the flush may have been rejected, evicting its session: read it back and start over
+            if (locked.values().stream().noneMatch(seats -> seats.retired)) {
+                locked.keySet().stream()
+                        .filter(this::isWaitingForRetry)
+                        .forEach(sessionId -> unavailable.put(sessionId, BookingOutcome.NOT_WRITTEN));
+                return locked;
+            }
+            unlockAll(locked);
+        }
+    }
+
+    private static void unlockAll(Map<Long, SessionSeats> locked) {
+        locked.values().forEach(seats -> seats.lock.writeLock().unlock());
+    }
+
+    // Only called under the write lock of the state, so nothing changed it since the booking
+    private static void unbook(SessionSeats seats, Long userId) {
+        if (seats.participants.remove(userId) != null) {
+            seats.release();
+            return;
+        }
+        synchronized (seats.waitlist) {
+            seats.waitlist.remove(userId);
+        }
+    }
+
+    /**
+     * Cancels a booking and hands the seat to the head of the waitlist, or removes the user from the waitlist.
+     */
+    public void cancel(Long sessionId, Long userId) {
+        withSeats(sessionId, seats -> {
+            cancel(seats, sessionId, userId);
+            return null;
+        });
+    }
+
+    private void cancel(SessionSeats seats, Long sessionId, Long userId) {
+        synchronized (seats.waitlist) {
+            drainLock.readLock().lock();
+            try {
+                PendingWrite write = new PendingWrite(DELETE_PARTICIPANT, sessionId, userId);
+                seats.participants.computeIfPresent(userId, (id, booking) -> {
+                    enqueue(write);
+                    return null;
+                });
+                if (write.queued) {
+                    promoteOrRelease(seats, sessionId);
+                    return;
+                }
+
+                if (!seats.waitlist.remove(userId)) {
+                    throw new BadRequestException();
+                }
+                enqueue(new PendingWrite(DELETE_WAITLIST, sessionId, userId));
+            } finally {
+                drainLock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * @return the 1-based waitlist position of the user, or {@code null} if the user is not waiting
+     */
+    public Integer getWaitlistPosition(Long sessionId, Long userId) {
+        SessionSeats seats = seatsOf(sessionId);
+        synchronized (seats.waitlist) {
+            return seats.waitlist.contains(userId) ? seats.waitlist.position(userId) : null;
+        }
+    }
+
+    /**
+     * Drops the in-memory state of an updated session and reads it back at once, so that seats freed
+     * by the update (a raised capacity, a removed participant) go to the waitlist without waiting
+     * for the next booking.
+     */
+    public void reload(Long sessionId) {
+        evict(sessionId);
+        try {
+            seatsOf(sessionId);
+        } catch (NotFoundException | ServiceUnavailableException e) {
+            // Read back, and promoted, by the next access instead
+            logger.debug("Session {} not reloaded: {}", sessionId, e.getMessage());
+        }
+    }
+
+    // Drops the in-memory state of a session written through another path (update, delete)
+    public void evict(Long sessionId) {
+        // A load reading the session meanwhile may have missed the write that led here
+        evictions.incrementAndGet();
+        SessionSeats seats = sessions.get(sessionId);
+        if (seats == null) {
+            return;
+        }
+
+        Lock lock = seats.lock.writeLock();
+        lock.lock();
+        try {
+            seats.retired = true;
+            evictions.incrementAndGet();
+            sessions.remove(sessionId, seats);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Same for every session, after participants were written in bulk
+    public void evictAll() {
+        evictions.incrementAndGet();
+        sessions.keySet().forEach(this::evict);
+    }
+
+    /**
+     * Deletes a session through {@code delete} once its in-memory state is retired: a booking in progress
+     * finishes first, later ones get a {@link NotFoundException}, and the writes queued for the session are
+     * flushed before its row goes, so that the foreign keys delete its PARTICIPATE and WAITLIST rows with it.
+     */
+    public void remove(Long sessionId, Runnable delete) {
+        removing.add(sessionId);
+        try {
+            evict(sessionId);
+            flush();
+            delete.run();
+        } finally {
+            removing.remove(sessionId);
+        }
+    }
+
+    public int getPendingWriteCount() {
+        return pendingWrites.size() + retryWrites.size();
+    }
+
+    public long getLostWriteCount() {
+        return lostWrites.get();
+    }
+
+    public int getBookedSeats(Long sessionId) {
+        SessionSeats seats = sessions.get(sessionId);
+        return seats == null ? 0 : seats.booked.get();
+    }
+
+    public synchronized void flush() {
+        List<PendingWrite> writes = new ArrayList<>(retryWrites);
+        retryWrites.clear();
+        drainLock.writeLock().lock();
+        try {
+            for (PendingWrite write = pendingWrites.poll(); write != null; write = pendingWrites.poll()) {
+                writes.add(write);
+            }
+        } finally {
+            drainLock.writeLock().unlock();
+        }
+        if (writes.isEmpty()) {
+            return;
+        }
+
+        List<PendingWrite> written = writes;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                batches(writes).forEach(this::writeBatch);
+                touchSessions(bookedSessionIds(writes));
+            });
+        } catch (DataAccessException e) {
+            logger.warn("Cannot flush {} bookings at once, retrying one by one: {}", writes.size(), e.getMessage());
+            written = writeOneByOne(writes);
+            try {
+                touchSessions(bookedSessionIds(written));
+            } catch (DataAccessException touchFailure) {
+                logger.error("Cannot update sessions {}: {}", bookedSessionIds(written), touchFailure.getMessage());
+            }
+        }
+
+        // Only now do session reads see the new participants
+        written.stream().map(write -> write.sessionId).distinct().forEach(resourceVersions.sessions()::changed);
+    }
+
+    // A new or cancelled participant changes the session for readers, delta sync included
+    private static Set<Long> bookedSessionIds(List<PendingWrite> writes) {
+        return writes.stream()
+                .filter(write -> write.sql.equals(INSERT_PARTICIPANT) || write.sql.equals(DELETE_PARTICIPANT))
+                .map(write -> write.sessionId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Cannot flush bookings: {}", e.getMessage());
+        }
+    }
+
+    // Consecutive writes with the same statement go in one JDBC batch
+    private static List<List<PendingWrite>> batches(List<PendingWrite> writes) {
+        List<List<PendingWrite>> batches = new ArrayList<>();
+        List<PendingWrite> batch = null;
+        for (PendingWrite write : writes) {
+            if (batch == null || !batch.get(0).sql.equals(write.sql)) {
+                batch = new ArrayList<>();
+                batches.add(batch);
+            }
+            batch.add(write);
+        }
+        return batches;
+    }
+
+    private void writeBatch(List<PendingWrite> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        batch.forEach(write -> rows.add(new Object[]{write.sessionId, write.userId}));
+        jdbcTemplate.batchUpdate(batch.get(0).sql, rows);
+    }
+
+    private void touchSessions(Set<Long> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return;
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(sessionIds.size());
+        sessionIds.forEach(sessionId -> rows.add(new Object[]{now, sessionId}));
+        jdbcTemplate.batchUpdate(TOUCH_SESSION, rows);
+    }
+
+    /**
+     * Writes each row in its own statement, until one fails without breaking a constraint: that
+     * write and the ones after it are kept in order for the next flush.
+     *
+     * @return the writes that reached the database
+     */
+    private List<PendingWrite> writeOneByOne(List<PendingWrite> writes) {
+        List<PendingWrite> written = new ArrayList<>(writes.size());
+        for (int i = 0; i < writes.size(); i++) {
+            PendingWrite write = writes.get(i);
+            try {
+                jdbcTemplate.update(write.sql, write.sessionId, write.userId);
+                written.add(write);
+            } catch (DuplicateKeyException e) {
+                logger.warn("Booking of user {} on session {} was already written", write.userId, write.sessionId);
+                evict(write.sessionId);
+            } catch (DataIntegrityViolationException e) {
+                lostWrites.incrementAndGet();
+                logger.error("Lost booking write of user {} on session {}: {}",
+                        write.userId, write.sessionId, e.getMessage());
+                evict(write.sessionId);
+            } catch (DataAccessException e) {
+                retryWrites.addAll(writes.subList(i, writes.size()));
+                logger.warn("Keeping {} booking writes for the next flush: {}", writes.size() - i, e.getMessage());
+                break;
+            }
+        }
+        return written;
+    }
+
+    // Called after a flush: a reload would miss the writes still waiting for a retry
+    private synchronized boolean isWaitingForRetry(Long sessionId) {
+        return retryWrites.stream().anyMatch(write -> write.sessionId.equals(sessionId));
+    }
+
+    private void addParticipant(SessionSeats seats, Long sessionId, Long userId, Collection<PendingWrite> writes) {
+        PendingWrite write = new PendingWrite(INSERT_PARTICIPANT, sessionId, userId);
+        if (seats.participants.computeIfAbsent(userId, id -> enqueue(writes, write)) != write) {
+            synchronized (seats.waitlist) {
+                promoteOrRelease(seats, sessionId, writes);
+            }
+            throw new BadRequestException();
+        }
+    }
+
+    // Called with the waitlist lock held: the freed seat goes to the head of the waitlist, O(1)
+    private void promoteOrRelease(SessionSeats seats, Long sessionId) {
+        promoteOrRelease(seats, sessionId, pendingWrites);
+    }
+
+    private void promoteOrRelease(SessionSeats seats, Long sessionId, Collection<PendingWrite> writes) {
+        Long next = seats.waitlist.poll();
+        if (next == null) {
+            seats.release();
+            return;
+        }
+
+        drainLock.readLock().lock();
+        try {
+            seats.participants.put(next, enqueue(writes, new PendingWrite(INSERT_PARTICIPANT, sessionId, next)));
+            enqueue(writes, new PendingWrite(DELETE_WAITLIST, sessionId, next));
+        } finally {
+            drainLock.readLock().unlock();
+        }
+    }
+
+    private PendingWrite enqueue(PendingWrite write) {
+        return enqueue(pendingWrites, write);
+    }
+
+    private static PendingWrite enqueue(Collection<PendingWrite> writes, PendingWrite write) {
+        writes.add(write);
+        write.queued = true;
+        return write;
+    }
+
+    // Runs action under the read lock of the live state of the session, never of a retired one
+    private <T> T withSeats(Long sessionId, Function<SessionSeats, T> action) {
+        while (true) {
+            SessionSeats seats = seatsOf(sessionId);
+            Lock lock = seats.lock.readLock();
+            lock.lock();
+            try {
+                if (!seats.retired) {
+                    return action.apply(seats);
+                }
+            } finally {
+                lock.unlock();
+            }
+            // Evicted meanwhile: its eviction removes it from the map right after retiring it
+            Thread.onSpinWait();
+        }
+    }
+
+    private SessionSeats seatsOf(Long sessionId) {
+        while (true) {
+            SessionSeats seats = sessions.get(sessionId);
+            if (seats != null) {
+                return seats;
+            }
+
+            long epoch = evictions.get();
+            SessionSeats loaded = load(sessionId);
+            // A state evicted while this one was read may hold writes the read missed
+            seats = sessions.compute(sessionId, (id, current) -> {
+                if (current != null) {
+                    return current;
+                }
+                if (evictions.get() != epoch) {
+                    return null;
+                }
+                // Promoted here so that only the published state queues the writes
+                promoteWaiters(loaded, id);
+                return loaded;
+            });
+            if (seats != null) {
+                return seats;
+            }
+        }
+    }
+
+    // A raised capacity, or a seat freed behind the engine, is handed to the waitlist as a cancellation would
+    private void promoteWaiters(SessionSeats seats, Long sessionId) {
+        synchronized (seats.waitlist) {
+            while (!seats.waitlist.isEmpty() && seats.tryReserve()) {
+                promoteOrRelease(seats, sessionId);
+            }
+        }
+    }
+
+    private SessionSeats load(Long sessionId) {
+        if (removing.contains(sessionId)) {
+            throw new NotFoundException();
+        }
+        // Earlier writes for this session must be visible before it is read back
+        flush();
+        if (isWaitingForRetry(sessionId)) {
+            throw new ServiceUnavailableException();
+        }
+
+        List<Integer> capacities = jdbcTemplate.query("SELECT capacity FROM SESSIONS WHERE id = ?",
+                (rs, rowNum) -> {
+                    int capacity = rs.getInt(1);
+                    return rs.wasNull() ? Integer.MAX_VALUE : capacity;
+                }, sessionId);
+        if (capacities.isEmpty()) {
+            throw new NotFoundException();
+        }
+
+        List<Long> userIds = jdbcTemplate.queryForList("SELECT user_id FROM PARTICIPATE WHERE session_id = ?",
+                Long.class, sessionId);
+        List<Long> waitingUserIds = jdbcTemplate.queryForList(
+                "SELECT w.user_id FROM WAITLIST w JOIN USERS u ON u.id = w.user_id WHERE w.session_id = ? ORDER BY w.id",
+                Long.class, sessionId);
+
+        SessionSeats seats = new SessionSeats(capacities.get(0));
+        for (Long userId : userIds) {
+            seats.participants.put(userId, PendingWrite.PERSISTED);
+            seats.booked.incrementAndGet();
+        }
+        waitingUserIds.forEach(seats.waitlist::add);
+        return seats;
+    }
+
+    private static final class SessionSeats {
+        private final int capacity;
+
+        private final AtomicInteger booked = new AtomicInteger();
+
+        private final ConcurrentHashMap<Long, PendingWrite> participants = new ConcurrentHashMap<>();
+
+        private final Waitlist waitlist = new Waitlist();
+
+        // Read side for every change of this state, write side to retire it
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private volatile boolean retired;
+
+        SessionSeats(int capacity) {
+            this.capacity = capacity;
+        }
+
+        boolean tryReserve() {
+            int current;
+            do {
+                current = booked.get();
+                if (current >= capacity) {
+                    return false;
+                }
+            } while (!booked.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        void release() {
+            booked.decrementAndGet();
+        }
+    }
+
+    /**
+     * FIFO of waiting users, guarded by its own monitor. Each user gets an increasing ticket, so a
+     * position is the distance to the head ticket minus the users who left from in between. Those
+     * are counted by a Fenwick tree over the tickets, so every operation is O(log n) in the span of
+     * tickets from the head; the tree is rebuilt, twice as large as that span, when tickets outgrow it.
+     */
+    private static final class Waitlist {
+        private static final int INITIAL_SIZE = 16;
+
+        private final LinkedHashMap<Long, Long> ticketByUser = new LinkedHashMap<>();
+
+        // leftCounts[i] counts the left tickets in a range ending at base + i - 1, 1-based
+        private int[] leftCounts = new int[INITIAL_SIZE + 1];
+
+        private long base;
+
+        private long nextTicket;
+
+        boolean add(Long userId) {
+            if (ticketByUser.containsKey(userId)) {
+                return false;
+            }
+            if (ticketByUser.isEmpty()) {
+                leftCounts = new int[INITIAL_SIZE + 1];
+                base = nextTicket;
+            } else if (nextTicket - base + 1 >= leftCounts.length) {
+                rebuild();
+            }
+            ticketByUser.put(userId, nextTicket++);
+            return true;
+        }
+
+        boolean contains(Long userId) {
+            return ticketByUser.containsKey(userId);
+        }
+
+        boolean isEmpty() {
+            return ticketByUser.isEmpty();
+        }
+
+        // Tickets before the head are never counted again, so they can stay in the tree
+        Long poll() {
+            Iterator<Map.Entry<Long, Long>> head = ticketByUser.entrySet().iterator();
+            if (!head.hasNext()) {
+                return null;
+            }
+
+            Long userId = head.next().getKey();
+            head.remove();
+            return userId;
+        }
+
+        boolean remove(Long userId) {
+            Long ticket = ticketByUser.remove(userId);
+            if (ticket == null) {
+                return false;
+            }
+            leave(ticket);
+            return true;
+        }
+
+        int position(Long userId) {
+            long ticket = ticketByUser.get(userId);
+            long headTicket = ticketByUser.values().iterator().next();
+            return (int) (ticket - headTicket - (leftBefore(ticket) - leftBefore(headTicket))) + 1;
+        }
+
+        private void leave(long ticket) {
+            for (int i = (int) (ticket - base) + 1; i < leftCounts.length; i += i & -i) {
+                leftCounts[i]++;
+            }
+        }
+
+        // Left tickets from base up to, not including, ticket
+        private int leftBefore(long ticket) {
+            int count = 0;
+            for (int i = (int) (ticket - base); i > 0; i -= i & -i) {
+                count += leftCounts[i];
+            }
+            return count;
+        }
+
+        // Restarts the tree at the head ticket; the gaps between live tickets are the users who left
+        private void rebuild() {
+            long headTicket = ticketByUser.values().iterator().next();
+            leftCounts = new int[Math.max(INITIAL_SIZE, 2 * (int) (nextTicket - headTicket + 1)) + 1];
+            base = headTicket;
+            long expected = headTicket;
+            for (long ticket : ticketByUser.values()) {
+                for (; expected < ticket; expected++) {
+                    leave(expected);
+                }
+                expected = ticket + 1;
+            }
+            for (; expected < nextTicket; expected++) {
+                leave(expected);
+            }
+        }
+    }
+
+    private static final class PendingWrite {
+        // Marks participants read from the database
+        private static final PendingWrite PERSISTED = new PendingWrite(null, null, null);
+
+        private final String sql;
+
+        private final Long sessionId;
+
+        private final Long userId;
+
+        private boolean queued;
+
+        PendingWrite(String sql, Long sessionId, Long userId) {
+            this.sql = sql;
+            this.sessionId = sessionId;
+            this.userId = userId;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.openclassrooms.starterjwt.services;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * What the {@link BookingEngine} did with one booking: a seat, a place on the waitlist,
+ * or, in a batch, the reason nothing was booked.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public final class BookingOutcome {
+    public enum Status {
+        BOOKED,
+        WAITLISTED,
+        SESSION_NOT_FOUND,
+        ALREADY_REGISTERED,
+        // The batch could not be written and was undone
+        NOT_WRITTEN
+    }
+
+    public static final BookingOutcome BOOKED = new BookingOutcome(Status.BOOKED, null);
+
+    public static final BookingOutcome SESSION_NOT_FOUND = new BookingOutcome(Status.SESSION_NOT_FOUND, null);
+
+    public static final BookingOutcome ALREADY_REGISTERED = new BookingOutcome(Status.ALREADY_REGISTERED, null);
+
+    public static final BookingOutcome NOT_WRITTEN = new BookingOutcome(Status.NOT_WRITTEN, null);
+
+    private final Status status;
+
+    // 1-based waitlist position, waitlisted bookings only
+    private final Integer position;
+
+    private BookingOutcome(Status status, Integer position) {
+        this.status = status;
+        this.position = position;
+    }
+
+    public static BookingOutcome waitlisted(int position) {
+        return new BookingOutcome(Status.WAITLISTED, position);
+    }
+}
@@ -0,0 +1,26 @@
+package com.openclassrooms.starterjwt.services;
+
+/**
+ * File formats of the bulk import and export, one row per record.
+ */
+public enum BulkFormat {
+    CSV("text/csv", "csv"),
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final String mediaType;
+
+    private final String extension;
+
+    BulkFormat(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,247 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Tables moved by the bulk import and export, with the columns of their rows.
+ *
+ * <p>Rows are keyed by column name, in CSV headers and NDJSON fields alike. Tables are listed in
+ * the order an import has to follow for the foreign keys.
+ */
+public enum BulkTable {
+    TEACHERS("id",
+            new Column("id", Type.LONG, true),
+            new Column("last_name", Type.STRING, false),
+            new Column("first_name", Type.STRING, false),
+            new Column("created_at", Type.DATE_TIME, false),
+            new Column("updated_at", Type.DATE_TIME, false)),
+    USERS("id",
+            new Column("id", Type.LONG, true),
+            new Column("email", Type.STRING, false),
+            new Column("last_name", Type.STRING, false),
+            new Column("first_name", Type.STRING, false),
+            new Column("password", Type.STRING, false),
+            new Column("admin", Type.BOOLEAN, false),
+            new Column("created_at", Type.DATE_TIME, false),
+            new Column("updated_at", Type.DATE_TIME, false)),
+    SESSIONS("id",
+            new Column("id", Type.LONG, true),
+            new Column("name", Type.STRING, false),
+            new Column("date", Type.DATE_TIME, false),
+            new Column("description", Type.STRING, false),
+            new Column("capacity", Type.LONG, false),
+            new Column("teacher_id", Type.LONG, false),
+            new Column("created_at", Type.DATE_TIME, false),
+            new Column("updated_at", Type.DATE_TIME, false)),
+    PARTICIPATE("session_id, user_id",
+            new Column("session_id", Type.LONG, true),
+            new Column("user_id", Type.LONG, true));
+
+    private final List<Column> columns;
+
+    private final String selectSql;
+
+    private final String insertSql;
+
+    private final int[] sqlTypes;
+
+    private final CsvSchema csvSchema;
+
+    BulkTable(String orderBy, Column... columns) {
+        this.columns = List.of(columns);
+        String names = this.columns.stream().map(Column::getName).collect(Collectors.joining(", "));
+        this.selectSql = "SELECT " + names + " FROM " + name() + " ORDER BY " + orderBy;
+        this.insertSql = "INSERT INTO " + name() + " (" + names + ") VALUES ("
+                + String.join(", ", Collections.nCopies(columns.length, "?")) + ")";
+        this.sqlTypes = this.columns.stream().mapToInt(column -> column.getType().sqlType).toArray();
+        CsvSchema.Builder schema = CsvSchema.builder().setUseHeader(true);
+        this.columns.forEach(column -> schema.addColumn(column.getName()));
+        this.csvSchema = schema.build();
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    public String getSelectSql() {
+        return selectSql;
+    }
+
+    public String getInsertSql() {
+        return insertSql;
+    }
+
+    public int[] getSqlTypes() {
+        return sqlTypes;
+    }
+
+    public CsvSchema getCsvSchema() {
+        return csvSchema;
+    }
+
+    /**
+     * Converts a parsed CSV or NDJSON row into the arguments of {@link #getInsertSql()}.
+     * Columns missing from the row are inserted as null.
+     *
+     * @throws IllegalArgumentException on an unknown column, a missing key or a value of the wrong type
+     */
+    public Object[] toArguments(Map<String, ?> row) {
+        for (String name : row.keySet()) {
+            if (columns.stream().noneMatch(column -> column.getName().equals(name))) {
+                throw new IllegalArgumentException("Unknown column " + name + " in " + name());
+            }
+        }
+
+        Object[] arguments = new Object[columns.size()];
+        for (int i = 0; i < arguments.length; i++) {
+            Column column = columns.get(i);
+            arguments[i] = column.getType().parse(column.getName(), row.get(column.getName()));
+            if (arguments[i] == null && column.isKey()) {
+                throw new IllegalArgumentException("Missing " + column.getName() + " in " + name());
+            }
+        }
+        return arguments;
+    }
+
+    /**
+     * Writes the current row of {@code resultSet}, read with {@link #getSelectSql()}, as one object.
+     */
+    public void writeRow(ResultSet resultSet, JsonGenerator generator) throws SQLException, IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            generator.writeFieldName(column.getName());
+            column.getType().write(generator, resultSet, i + 1);
+        }
+        generator.writeEndObject();
+    }
+
+    public static final class Column {
+        private final String name;
+
+        private final Type type;
+
+        private final boolean key;
+
+        private Column(String name, Type type, boolean key) {
+            this.name = name;
+            this.type = type;
+            this.key = key;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        public boolean isKey() {
+            return key;
+        }
+    }
+
+    public enum Type {
+        LONG(Types.BIGINT),
+        STRING(Types.VARCHAR),
+        BOOLEAN(Types.BOOLEAN),
+        DATE_TIME(Types.TIMESTAMP);
+
+        private final int sqlType;
+
+        Type(int sqlType) {
+            this.sqlType = sqlType;
+        }
+
+        // CSV gives strings only, an empty one stands for null except in text columns
+        private Object parse(String column, Object value) {
+            if (value == null) {
+                return null;
+            }
+            if (value instanceof Map || value instanceof List) {
+                throw new IllegalArgumentException("Nested value in " + column);
+            }
+            if (this == STRING) {
+                return value.toString();
+            }
+            if (value instanceof String && ((String) value).isEmpty()) {
+                return null;
+            }
+
+            switch (this) {
+                case LONG:
+                    if (value instanceof Integer || value instanceof Long) {
+                        return ((Number) value).longValue();
+                    }
+                    if (value instanceof String) {
+                        return Long.valueOf((String) value);
+                    }
+                    break;
+                case BOOLEAN:
+                    if (value instanceof Boolean) {
+                        return value;
+                    }
+                    if ("true".equals(value) || "1".equals(value)) {
+                        return true;
+                    }
+                    if ("false".equals(value) || "0".equals(value)) {
+                        return false;
+                    }
+                    break;
+                default:
+                    if (value instanceof String) {
+                        try {
+                            return Timestamp.valueOf(LocalDateTime.parse((String) value));
+                        } catch (DateTimeParseException e) {
+                            throw new IllegalArgumentException("Invalid date time " + value + " in " + column);
+                        }
+                    }
+            }
+            throw new IllegalArgumentException("Invalid " + name().toLowerCase(Locale.ROOT) + " " + value + " in " + column);
+        }
+
+        private void write(JsonGenerator generator, ResultSet resultSet, int index) throws SQLException, IOException {
+            switch (this) {
+                case LONG:
+                    long number = resultSet.getLong(index);
+                    if (resultSet.wasNull()) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeNumber(number);
+                    }
+                    break;
+                case BOOLEAN:
+                    boolean flag = resultSet.getBoolean(index);
+                    if (resultSet.wasNull()) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeBoolean(flag);
+                    }
+                    break;
+                case DATE_TIME:
+                    Timestamp timestamp = resultSet.getTimestamp(index);
+                    generator.writeString(timestamp != null
+                            ? DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(timestamp.toLocalDateTime()) : null);
+                    break;
+                default:
+                    generator.writeString(resultSet.getString(index));
+            }
+        }
+    }
+}
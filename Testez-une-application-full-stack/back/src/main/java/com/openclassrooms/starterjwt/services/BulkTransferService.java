@@ -0,0 +1,294 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvGenerator;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.openclassrooms.starterjwt.payload.response.BulkImportResult;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationRegistry;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Moves whole tables in and out as CSV or NDJSON, for studio migrations.
+ *
+ * <p>Exports read a forward-only cursor and write each row as it arrives. Imports parse one row
+ * at a time and insert them in JDBC batches, each committed together with the checkpoint of the
+ * import: an interrupted import sent again with the same id skips the rows already committed, so
+ * neither side ever holds more than a batch in memory.
+ */
+@Service
+public class BulkTransferService {
+    private static final Logger logger = LoggerFactory.getLogger(BulkTransferService.class);
+
+    public static final int MAX_BATCH_SIZE = 10_000;
+
+    private static final int MAX_IMPORT_ID_LENGTH = 64;
+
+    private static final CsvMapper CSV_MAPPER = new CsvMapper();
+
+    private static final TypeReference<Map<String, Object>> ROW_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
+    private static final String FIND_CHECKPOINT =
+            "SELECT table_name, rows_committed FROM BULK_IMPORT_CHECKPOINTS WHERE import_id = ?";
+
+    private static final String UPDATE_CHECKPOINT =
+            "UPDATE BULK_IMPORT_CHECKPOINTS SET rows_committed = ?, updated_at = ? WHERE import_id = ?";
+
+    private static final String INSERT_CHECKPOINT =
+            "INSERT INTO BULK_IMPORT_CHECKPOINTS (import_id, table_name, rows_committed, updated_at) VALUES (?, ?, ?, ?)";
+
+    private static final String TOUCH_SESSION = "UPDATE SESSIONS SET updated_at = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ObjectMapper objectMapper;
+
+    private final BookingEngine bookingEngine;
+
+    private final SessionSearchIndex sessionSearchIndex;
+
+    private final TeacherCache teacherCache;
+
+    private final ResourceVersions resourceVersions;
+
+    private final UserDetailsCache userDetailsCache;
+
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+
+    private final KnownUserIds knownUserIds;
+
+    private final int defaultBatchSize;
+
+    public BulkTransferService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               ObjectMapper objectMapper, BookingEngine bookingEngine,
+                               SessionSearchIndex sessionSearchIndex, TeacherCache teacherCache,
+                               ResourceVersions resourceVersions, UserDetailsCache userDetailsCache,
+                               TokenRevocationRegistry tokenRevocationRegistry, KnownUserIds knownUserIds,
+                               @Value("${oc.app.exportFetchSize}") int fetchSize,
+                               @Value("${oc.app.bulkBatchSize}") int defaultBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.bookingEngine = bookingEngine;
+        this.sessionSearchIndex = sessionSearchIndex;
+        this.teacherCache = teacherCache;
+        this.resourceVersions = resourceVersions;
+        this.userDetailsCache = userDetailsCache;
+        this.tokenRevocationRegistry = tokenRevocationRegistry;
+        this.knownUserIds = knownUserIds;
+        this.defaultBatchSize = defaultBatchSize;
+    }
+
+    /**
+     * Streams every row of {@code table} to {@code out}, in key order.
+     *
+     * @return the number of exported rows
+     */
+    public long export(BulkTable table, BulkFormat format, OutputStream out) throws IOException {
+        // Bookings still queued in the engine belong in the export
+        this.bookingEngine.flush();
+
+        try (JsonGenerator generator = createGenerator(table, format, out)) {
+            // An export cut short by an error must not end with a complete last row
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            long[] count = {0};
+            try {
+                streamingJdbcTemplate.query(table.getSelectSql(), resultSet -> {
+                    try {
+                        table.writeRow(resultSet, generator);
+                        count[0]++;
+                    } catch (IOException e) {
+                        // The client went away, which also ends the cursor
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (format == BulkFormat.NDJSON && count[0] > 0) {
+                generator.writeRaw('\n');
+            }
+            return count[0];
+        }
+    }
+
+    /**
+     * Inserts the rows read from {@code in} into {@code table}, resuming the import {@code importId}
+     * after its last committed batch. The import stops at the first invalid row or failed batch;
+     * the batches committed before it are kept and reported in the result.
+     *
+     * @param importId  the import to resume, or {@code null} to start a new one
+     * @param batchSize rows per batch and transaction, or {@code null} for {@code oc.app.bulkBatchSize}
+     * @throws IllegalArgumentException if the batch size is out of range or the import belongs to another table
+     */
+    public BulkImportResult importRows(BulkTable table, BulkFormat format, InputStream in, String importId,
+                                       Integer batchSize) {
+        int size = batchSize != null ? batchSize : defaultBatchSize;
+        if (size < 1 || size > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        String id = StringUtils.hasText(importId) ? importId : UUID.randomUUID().toString();
+        if (id.length() > MAX_IMPORT_ID_LENGTH) {
+            throw new IllegalArgumentException("Import id is too long");
+        }
+        long resumeAfter = findCheckpoint(id, table);
+        long committed = resumeAfter;
+
+        if (table == BulkTable.PARTICIPATE) {
+            // Queued bookings go in first, so that imported rows do not collide with them later
+            this.bookingEngine.flush();
+        }
+
+        long skipped = 0;
+        long imported = 0;
+        List<Object[]> batch = new ArrayList<>(size);
+        try (MappingIterator<Map<String, Object>> rows = createReader(format).readValues(in)) {
+            while (rows.hasNextValue()) {
+                Map<String, Object> row = rows.nextValue();
+                if (skipped < resumeAfter) {
+                    skipped++;
+                    continue;
+                }
+
+                batch.add(table.toArguments(row));
+                if (batch.size() == size) {
+                    committed = writeBatch(table, id, batch, committed);
+                    imported += batch.size();
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                committed = writeBatch(table, id, batch, committed);
+                imported += batch.size();
+            }
+            return new BulkImportResult(id, table, imported, committed, null);
+        } catch (IOException | IllegalArgumentException | DataAccessException e) {
+            logger.warn("Bulk import {} into {} stopped after {} rows: {}", id, table, committed, e.getMessage());
+            return new BulkImportResult(id, table, imported, committed, e.getMessage());
+        } finally {
+            if (imported > 0) {
+                afterImport(table);
+            }
+        }
+    }
+
+    private JsonGenerator createGenerator(BulkTable table, BulkFormat format, OutputStream out) throws IOException {
+        if (format == BulkFormat.CSV) {
+            CsvGenerator generator = CSV_MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8);
+            generator.setSchema(table.getCsvSchema());
+            return generator;
+        }
+
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        generator.setRootValueSeparator(new SerializedString("\n"));
+        return generator;
+    }
+
+    private ObjectReader createReader(BulkFormat format) {
+        if (format == BulkFormat.CSV) {
+            // Columns are named by the header line, in any order
+            return CSV_MAPPER.readerFor(ROW_TYPE).with(CsvSchema.emptySchema().withHeader());
+        }
+        return objectMapper.readerFor(ROW_TYPE);
+    }
+
+    private long findCheckpoint(String importId, BulkTable table) {
+        List<Long> rowsCommitted = jdbcTemplate.query(FIND_CHECKPOINT, (resultSet, rowNum) -> {
+            if (!table.name().equals(resultSet.getString(1))) {
+                throw new IllegalArgumentException("Import " + importId + " belongs to " + resultSet.getString(1));
+            }
+            return resultSet.getLong(2);
+        }, importId);
+        return rowsCommitted.isEmpty() ? 0 : rowsCommitted.get(0);
+    }
+
+    private long writeBatch(BulkTable table, String importId, List<Object[]> batch, long committed) {
+        long total = committed + batch.size();
+        LocalDateTime now = LocalDateTime.now();
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(table.getInsertSql(), batch, table.getSqlTypes());
+            if (table == BulkTable.PARTICIPATE) {
+                // Delta sync clients see the new participants of each session
+                Set<Long> sessionIds = new LinkedHashSet<>();
+                batch.forEach(arguments -> sessionIds.add((Long) arguments[0]));
+                List<Object[]> touches = new ArrayList<>(sessionIds.size());
+                sessionIds.forEach(sessionId -> touches.add(new Object[]{now, sessionId}));
+                jdbcTemplate.batchUpdate(TOUCH_SESSION, touches);
+            }
+            if (jdbcTemplate.update(UPDATE_CHECKPOINT, total, now, importId) == 0) {
+                jdbcTemplate.update(INSERT_CHECKPOINT, importId, table.name(), total, now);
+            }
+        });
+        if (table == BulkTable.USERS) {
+            batch.forEach(arguments -> resetImportedUser((Long) arguments[0]));
+        }
+        return total;
+    }
+
+    /**
+     * The id of an imported user was free, but may have belonged to a user deleted since: the tokens
+     * issued for it before now are revoked, and the id is looked up again on the next booking.
+     */
+    private void resetImportedUser(Long userId) {
+        tokenRevocationRegistry.revoke(userId);
+        knownUserIds.forget(userId);
+    }
+
+    // Rows written behind the back of JPA: drop what the caches, ETags and search index hold
+    private void afterImport(BulkTable table) {
+        switch (table) {
+            case USERS:
+                userDetailsCache.removeAllUsersFromCache();
+                break;
+            case TEACHERS:
+                teacherCache.evictAll();
+                resourceVersions.teachers().changed(null);
+                break;
+            case SESSIONS:
+                resourceVersions.sessions().changed(null);
+                sessionSearchIndex.rebuildInBackground();
+                break;
+            case PARTICIPATE:
+                bookingEngine.evictAll();
+                resourceVersions.sessions().changed(null);
+                break;
+            default:
+                break;
+        }
+    }
+}
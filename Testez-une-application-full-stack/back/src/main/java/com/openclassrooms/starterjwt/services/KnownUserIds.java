@@ -0,0 +1,79 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Ids of users known to exist, so that a booking does not check the USERS table each time.
+ *
+ * <p>Only hits are cached: an unknown id is looked up again on every call, so a user created
+ * after a failed booking can book at once. {@link UserService#delete} forgets the id; a user deleted
+ * outside the application is still taken as existing until the TTL expires, and its bookings are
+ * then rejected by the foreign key at flush time and counted as lost by the {@link BookingEngine}.
+ */
+@Component
+public class KnownUserIds {
+    private final UserRepository userRepository;
+
+    private final Cache<Long, Boolean> ids;
+
+    public KnownUserIds(UserRepository userRepository,
+                        @Value("${oc.app.userCacheMaxSize}") long maxSize,
+                        @Value("${oc.app.userCacheTtlMs}") long ttlMs) {
+        this.userRepository = userRepository;
+        this.ids = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+    }
+
+    public boolean exists(Long id) {
+        if (ids.getIfPresent(id) != null) {
+            return true;
+        }
+        if (!userRepository.existsById(id)) {
+            return false;
+        }
+        ids.put(id, Boolean.TRUE);
+        return true;
+    }
+
+    // Only the ids missing from the cache are looked up, with a single query
+    public Set<Long> existing(Collection<Long> candidates) {
+        Set<Long> existing = new HashSet<>(ids.getAllPresent(candidates).keySet());
+        List<Long> missing = candidates.stream()
+                .filter(id -> !existing.contains(id))
+                .distinct()
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            for (Long id : userRepository.findExistingIds(missing)) {
+                ids.put(id, Boolean.TRUE);
+                existing.add(id);
+            }
+        }
+        return existing;
+    }
+
+    public void forget(Long id) {
+        ids.invalidate(id);
+    }
+
+    public long getHitCount() {
+        return ids.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return ids.stats().missCount();
+    }
+}
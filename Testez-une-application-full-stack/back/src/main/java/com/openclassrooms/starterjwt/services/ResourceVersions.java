@@ -0,0 +1,73 @@
+package com.openclassrooms.starterjwt.services;
+
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Change counters behind the ETags of the session and teacher reads, so that a matching
+ * {@code If-None-Match} is answered without loading or mapping any row.
+ *
+ * <p>A resource changes its version once its write has committed; a reader takes the version
+ * before reading the rows, so an ETag is never newer than the body it was sent with. Counters
+ * restart with the process: the boot time in every ETag keeps those of a previous run from matching.
+ */
+@Component
+public class ResourceVersions {
+    private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Versions sessions = new Versions("session");
+
+    private final Versions teachers = new Versions("teacher");
+
+    public Versions sessions() {
+        return sessions;
+    }
+
+    public Versions teachers() {
+        return teachers;
+    }
+
+    public static final class Versions {
+        private final String name;
+
+        private final AtomicLong version = new AtomicLong();
+
+        // Collection version at the last change of each item, items never changed since boot are absent
+        private final ConcurrentHashMap<Long, Long> itemVersions = new ConcurrentHashMap<>();
+
+        private Versions(String name) {
+            this.name = name;
+        }
+
+        public void changed(Long id) {
+            long current = version.incrementAndGet();
+            if (id != null) {
+                itemVersions.merge(id, current, Math::max);
+            }
+        }
+
+        public void removed(Long id) {
+            version.incrementAndGet();
+            if (id != null) {
+                itemVersions.remove(id);
+            }
+        }
+
+        public long getVersion() {
+            return version.get();
+        }
+
+        public String listETag() {
+            return "\"" + name + "s-" + EPOCH + "-" + version.get() + "\"";
+        }
+
+        public String itemETag(Long id, LocalDateTime updatedAt) {
+            long updatedAtMs = updatedAt != null ? updatedAt.toInstant(ZoneOffset.UTC).toEpochMilli() : 0L;
+            return "\"" + name + "-" + id + "-" + EPOCH + "-" + itemVersions.getOrDefault(id, 0L) + "-" + updatedAtMs + "\"";
+        }
+    }
+}
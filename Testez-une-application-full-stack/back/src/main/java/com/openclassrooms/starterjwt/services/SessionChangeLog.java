@@ -0,0 +1,56 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.SessionTombstone;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.SessionTombstoneRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Changes to the session catalogue for delta sync clients: sessions whose updated_at is past a point in
+ * time, and a log of deleted session ids kept for {@code oc.app.sessionTombstoneRetentionMs}. A client
+ * whose last sync is older than that may have missed deletions and must reload the whole catalogue.
+ */
+@Service
+public class SessionChangeLog {
+    private final SessionRepository sessionRepository;
+
+    private final SessionTombstoneRepository sessionTombstoneRepository;
+
+    private final Duration retention;
+
+    public SessionChangeLog(SessionRepository sessionRepository,
+                            SessionTombstoneRepository sessionTombstoneRepository,
+                            @Value("${oc.app.sessionTombstoneRetentionMs}") long retentionMs) {
+        this.sessionRepository = sessionRepository;
+        this.sessionTombstoneRepository = sessionTombstoneRepository;
+        this.retention = Duration.ofMillis(retentionMs);
+    }
+
+    // The tombstone is written in the same transaction, so no client misses a deletion; expired ones go with it
+    @Transactional
+    public void deleteSession(Long id) {
+        LocalDateTime now = LocalDateTime.now();
+        this.sessionRepository.deleteById(id);
+        this.sessionTombstoneRepository.save(SessionTombstone.builder().sessionId(id).deletedAt(now).build());
+        this.sessionTombstoneRepository.deleteDeletedBefore(now.minus(retention));
+    }
+
+    public boolean covers(LocalDateTime since) {
+        return !since.isBefore(LocalDateTime.now().minus(retention));
+    }
+
+    public List<Session> findUpdatedSince(LocalDateTime since) {
+        return this.sessionRepository.findByUpdatedAtAfterOrderByUpdatedAtAscIdAsc(since);
+    }
+
+    public List<Long> findDeletedSince(LocalDateTime since) {
+        return this.sessionTombstoneRepository.findSessionIdsDeletedAfter(since);
+    }
+}
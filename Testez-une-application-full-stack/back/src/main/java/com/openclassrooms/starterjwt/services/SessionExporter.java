@@ -0,0 +1,119 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * Writes the whole session catalogue as one JSON array, in the shape of {@code GET /api/session}.
+ *
+ * <p>Rows are read from a forward-only cursor over SESSIONS joined to PARTICIPATE and serialized as
+ * they arrive, so only the session being written is held in memory. How the driver streams depends on
+ * {@code oc.app.exportFetchSize}: MySQL Connector/J reads row by row only with {@code Integer.MIN_VALUE},
+ * other drivers take a positive batch size.
+ */
+@Component
+public class SessionExporter {
+    // Participants arrive next to their session, the unique key on PARTICIPATE serves the ordered join
+    private static final String EXPORT_SESSIONS = "SELECT s.id, s.name, s.date, s.teacher_id, s.description, s.capacity, "
+            + "s.created_at, s.updated_at, p.user_id "
+            + "FROM SESSIONS s LEFT JOIN PARTICIPATE p ON p.session_id = s.id ORDER BY s.id, p.user_id";
+
+    private final JdbcTemplate streamingJdbcTemplate;
+
+    private final BookingEngine bookingEngine;
+
+    // Writes are left to the generator buffer instead of flushing the response after every session
+    private final ObjectWriter sessionWriter;
+
+    private final ObjectMapper objectMapper;
+
+    public SessionExporter(JdbcTemplate jdbcTemplate, BookingEngine bookingEngine, ObjectMapper objectMapper,
+                           @Value("${oc.app.exportFetchSize}") int fetchSize) {
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(fetchSize);
+        this.bookingEngine = bookingEngine;
+        this.objectMapper = objectMapper;
+        this.sessionWriter = objectMapper.writerFor(SessionDto.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Streams every session to {@code out}, ordered by id.
+     *
+     * @return the number of exported sessions
+     */
+    public int export(OutputStream out) throws IOException {
+        // Bookings still queued in the engine belong in the export
+        this.bookingEngine.flush();
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            // An export cut short by an error must not end up as a well-formed, shorter array
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+            SessionDto[] current = {null};
+            int[] count = {0};
+            try {
+                streamingJdbcTemplate.query(EXPORT_SESSIONS, resultSet -> {
+                    long id = resultSet.getLong(1);
+                    if (current[0] == null || current[0].getId() != id) {
+                        write(generator, current[0]);
+                        current[0] = toDto(resultSet);
+                        count[0]++;
+                    }
+                    long userId = resultSet.getLong(9);
+                    if (!resultSet.wasNull()) {
+                        current[0].getUsers().add(userId);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            write(generator, current[0]);
+            generator.writeEndArray();
+            return count[0];
+        }
+    }
+
+    private void write(JsonGenerator generator, SessionDto session) {
+        if (session == null) {
+            return;
+        }
+        try {
+            sessionWriter.writeValue(generator, session);
+        } catch (IOException e) {
+            // The client went away, which also ends the cursor
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static SessionDto toDto(ResultSet resultSet) throws SQLException {
+        long teacherId = resultSet.getLong(4);
+        Long teacher = resultSet.wasNull() ? null : teacherId;
+        int capacity = resultSet.getInt(6);
+        Integer seats = resultSet.wasNull() ? null : capacity;
+        Timestamp timestamp = resultSet.getTimestamp(3);
+        Date date = timestamp != null ? new Date(timestamp.getTime()) : null;
+        return new SessionDto(resultSet.getLong(1), resultSet.getString(2), date, teacher, resultSet.getString(5), seats,
+                toLocalDateTime(resultSet.getTimestamp(7)), toLocalDateTime(resultSet.getTimestamp(8)));
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
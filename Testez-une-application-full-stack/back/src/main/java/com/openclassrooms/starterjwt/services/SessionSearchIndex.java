@@ -0,0 +1,248 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.Session;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.LockObtainFailedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Full-text index over session names and descriptions, kept in a local Lucene directory.
+ *
+ * <p>Sessions are indexed once their transaction has committed, so the index never holds a write that
+ * was rolled back. Searches read a near-real-time searcher and never lock. On startup the index is
+ * rebuilt from SESSIONS in the background; writes made meanwhile wait for the rebuild and are applied
+ * after it, so they are not overwritten by an older copy of the row.
+ */
+@Component
+public class SessionSearchIndex {
+    private static final Logger logger = LoggerFactory.getLogger(SessionSearchIndex.class);
+
+    // Deepest result reachable through offset pagination, page * size included
+    public static final int MAX_RESULT_WINDOW = 10_000;
+
+    private static final String ID_FIELD = "id";
+
+    private static final String NAME_FIELD = "name";
+
+    private static final String DESCRIPTION_FIELD = "description";
+
+    // A match in the name ranks above the same match in the description
+    private static final Map<String, Float> FIELD_WEIGHTS = Map.of(NAME_FIELD, 2f, DESCRIPTION_FIELD, 1f);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final String indexPath;
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+
+    private Directory directory;
+
+    private IndexWriter indexWriter;
+
+    private SearcherManager searcherManager;
+
+    public SessionSearchIndex(JdbcTemplate jdbcTemplate, @Value("${oc.app.sessionIndexPath}") String indexPath) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.indexPath = indexPath;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        directory = StringUtils.hasText(indexPath) ? FSDirectory.open(Paths.get(indexPath)) : new ByteBuffersDirectory();
+        try {
+            indexWriter = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+        } catch (LockObtainFailedException e) {
+            // Another instance owns the directory; this one serves an in-memory copy rebuilt on startup
+            logger.warn("Session index {} is locked, using an in-memory index", indexPath);
+            directory.close();
+            directory = new ByteBuffersDirectory();
+            indexWriter = new IndexWriter(directory, new IndexWriterConfig(analyzer));
+        }
+        searcherManager = new SearcherManager(indexWriter, null);
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        searcherManager.close();
+        indexWriter.close();
+        directory.close();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildInBackground() {
+        Thread thread = new Thread(this::rebuildQuietly, "session-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Replaces the whole index with the rows of SESSIONS.
+     *
+     * @return the number of indexed sessions
+     */
+    public synchronized int rebuild() throws IOException {
+        indexWriter.deleteAll();
+        int[] count = {0};
+        jdbcTemplate.query("SELECT id, name, description FROM SESSIONS", resultSet -> {
+            try {
+                indexWriter.addDocument(toDocument(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3)));
+                count[0]++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        commit();
+        return count[0];
+    }
+
+    public void index(Session session) {
+        afterCommit(() -> {
+            indexWriter.updateDocument(idTerm(session.getId()),
+                    toDocument(session.getId(), session.getName(), session.getDescription()));
+            commit();
+        });
+    }
+
+    public void remove(Long id) {
+        afterCommit(() -> {
+            indexWriter.deleteDocuments(idTerm(id));
+            commit();
+        });
+    }
+
+    /**
+     * Ranks the sessions matching {@code text}, names weighing twice as much as descriptions.
+     * All terms are required; {@code "..."}, {@code |}, {@code -} and a trailing {@code *} work as usual.
+     *
+     * @return a page of session ids, best match first
+     * @throws IllegalArgumentException if the page lies beyond {@link #MAX_RESULT_WINDOW}
+     */
+    public Page<Long> search(String text, int page, int size) {
+        PageRequest pageRequest = PageRequest.of(page, size);
+        if ((long) page * size + size > MAX_RESULT_WINDOW) {
+            throw new IllegalArgumentException("Result window is too large");
+        }
+
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, FIELD_WEIGHTS);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query query = StringUtils.hasText(text) ? parser.parse(text) : null;
+        if (query == null) {
+            return Page.empty(pageRequest);
+        }
+
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopScoreDocCollector collector = TopScoreDocCollector.create(page * size + size, Integer.MAX_VALUE);
+                searcher.search(query, collector);
+                TopDocs topDocs = collector.topDocs(page * size, size);
+
+                List<Long> ids = new ArrayList<>(topDocs.scoreDocs.length);
+                for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+                    ids.add(Long.valueOf(searcher.doc(scoreDoc.doc).get(ID_FIELD)));
+                }
+                return new PageImpl<>(ids, pageRequest, topDocs.totalHits.value);
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void rebuildQuietly() {
+        try {
+            logger.info("Indexed {} sessions", rebuild());
+        } catch (DataAccessException | IOException | UncheckedIOException | AlreadyClosedException e) {
+            logger.warn("Cannot rebuild the session index: {}", e.getMessage());
+        }
+    }
+
+    // Outside a transaction the session is already committed, and is indexed right away
+    private void afterCommit(IndexWrite write) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(write);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                apply(write);
+            }
+        });
+    }
+
+    // The database is already committed, so a failed index write is logged rather than failing the request
+    private synchronized void apply(IndexWrite write) {
+        try {
+            write.run();
+        } catch (IOException e) {
+            logger.error("Cannot update the session index: {}", e.getMessage());
+        }
+    }
+
+    private void commit() throws IOException {
+        indexWriter.commit();
+        searcherManager.maybeRefreshBlocking();
+    }
+
+    private static Term idTerm(Long id) {
+        return new Term(ID_FIELD, String.valueOf(id));
+    }
+
+    private static Document toDocument(long id, String name, String description) {
+        Document document = new Document();
+        document.add(new StringField(ID_FIELD, String.valueOf(id), Field.Store.YES));
+        document.add(new TextField(NAME_FIELD, name != null ? name : "", Field.Store.NO));
+        document.add(new TextField(DESCRIPTION_FIELD, description != null ? description : "", Field.Store.NO));
+        return document;
+    }
+
+    @FunctionalInterface
+    private interface IndexWrite {
+        void run() throws IOException;
+    }
+}
@@ -1,78 +1,328 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
 import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.Session;
-import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.payload.request.BulkParticipationRequest;
+import com.openclassrooms.starterjwt.payload.response.ParticipationResult;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
-import com.openclassrooms.starterjwt.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 public class SessionService {
+    private static final Sort SESSION_ORDER = Sort.by("date", "id");
+
+    // Open date range bounds, kept within what a MySQL DATETIME accepts
+    private static final Date MIN_DATE = new Date(0L);
+
+    private static final Date MAX_DATE = Date.from(Instant.parse("9999-12-31T00:00:00Z"));
+
     private final SessionRepository sessionRepository;
 
-    private final UserRepository userRepository;
+    private final KnownUserIds knownUserIds;
+
+    private final BookingEngine bookingEngine;
+
+    private final SessionSearchIndex sessionSearchIndex;
+
+    private final ResourceVersions resourceVersions;
+
+    private final SessionChangeLog sessionChangeLog;
+
+    // Outcomes of single and bulk bookings, as yoga.bookings{outcome}
+    private final Counter bookedCounter;
 
-    public SessionService(SessionRepository sessionRepository, UserRepository userRepository) {
+    private final Counter waitlistedCounter;
+
+    private final Counter conflictCounter;
+
+    private final Counter notFoundCounter;
+
+    private final Counter failedCounter;
+
+    public SessionService(SessionRepository sessionRepository, KnownUserIds knownUserIds,
+                          BookingEngine bookingEngine, SessionSearchIndex sessionSearchIndex,
+                          ResourceVersions resourceVersions, SessionChangeLog sessionChangeLog,
+                          MeterRegistry meterRegistry) {
         this.sessionRepository = sessionRepository;
-        this.userRepository = userRepository;
+        this.knownUserIds = knownUserIds;
+        this.bookingEngine = bookingEngine;
+        this.sessionSearchIndex = sessionSearchIndex;
+        this.resourceVersions = resourceVersions;
+        this.sessionChangeLog = sessionChangeLog;
+        this.bookedCounter = bookingCounter(meterRegistry, "booked");
+        this.waitlistedCounter = bookingCounter(meterRegistry, "waitlisted");
+        this.conflictCounter = bookingCounter(meterRegistry, "conflict");
+        this.notFoundCounter = bookingCounter(meterRegistry, "not_found");
+        this.failedCounter = bookingCounter(meterRegistry, "failed");
+        Gauge.builder("yoga.bookings.pending.writes", bookingEngine, BookingEngine::getPendingWriteCount)
+                .description("Booking writes waiting for a flush, retries included")
+                .register(meterRegistry);
+        FunctionCounter.builder("yoga.bookings.lost.writes", bookingEngine, BookingEngine::getLostWriteCount)
+                .description("Accepted bookings the database rejected for good")
+                .register(meterRegistry);
     }
 
     public Session create(Session session) {
-        return this.sessionRepository.save(session);
+        Session created = this.sessionRepository.save(session);
+        this.sessionSearchIndex.index(created);
+        this.resourceVersions.sessions().changed(created.getId());
+        return created;
     }
 
     public void delete(Long id) {
-        this.sessionRepository.deleteById(id);
+        this.bookingEngine.remove(id, () -> this.sessionChangeLog.deleteSession(id));
+        this.sessionSearchIndex.remove(id);
+        this.resourceVersions.sessions().removed(id);
     }
 
     public List<Session> findAll() {
         return this.sessionRepository.findAll();
     }
 
+    /**
+     * Lists the sessions as DTOs built from two projection queries, so no User entity
+     * (password hash, email...) is loaded just to read participant ids.
+     */
+    public List<SessionDto> findAllSummaries() {
+        List<SessionDto> sessions = this.sessionRepository.findAllSummaries();
+
+        Map<Long, SessionDto> sessionsById = new HashMap<>(sessions.size() * 2);
+        sessions.forEach(session -> sessionsById.put(session.getId(), session));
+
+        for (Object[] participant : this.sessionRepository.findAllParticipantIds()) {
+            SessionDto session = sessionsById.get(((Number) participant[0]).longValue());
+            if (session != null) {
+                session.getUsers().add(((Number) participant[1]).longValue());
+            }
+        }
+
+        return sessions;
+    }
+
+    /**
+     * Lists the sessions a user participates in, optionally within [from, to), ordered by date.
+     */
+    public List<SessionSummaryDto> findByParticipant(Long userId, Date from, Date to) {
+        return this.sessionRepository.findSummariesByParticipant(userId,
+                        from != null ? from : MIN_DATE, to != null ? to : MAX_DATE).stream()
+                .map(row -> new SessionSummaryDto(((Number) row[0]).longValue(), (String) row[1], (Date) row[2],
+                        row[3] != null ? ((Number) row[3]).longValue() : null))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Searches the sessions of a date window, optionally for one teacher and only those with a free seat.
+     * Each variant is a separate query so that it is served by its own (teacher_id, date) or (date, id) index.
+     * Free seats are counted from the PARTICIPATE rows, so the bookings still queued in the
+     * {@link BookingEngine} are flushed first.
+     */
+    public Page<Session> search(Date from, Date to, Long teacherId, boolean freeSeatsOnly, Sort sort, int page, int size) {
+        PageRequest pageRequest = PageRequest.of(page, size, sort.and(Sort.by("id")));
+        if (freeSeatsOnly) {
+            this.bookingEngine.flush();
+        }
+        if (teacherId != null) {
+            return this.sessionRepository.searchByTeacher(teacherId, from, to, freeSeatsOnly, pageRequest);
+        }
+
+        return this.sessionRepository.search(from, to, freeSeatsOnly, pageRequest);
+    }
+
+    /**
+     * Full-text search over names and descriptions: the index ranks the ids, then the page of
+     * sessions is loaded with one query. Ids of sessions deleted meanwhile are skipped.
+     */
+    public Page<Session> searchText(String text, int page, int size) {
+        Page<Long> ids = this.sessionSearchIndex.search(text, page, size);
+        if (ids.isEmpty()) {
+            return new PageImpl<>(List.of(), ids.getPageable(), ids.getTotalElements());
+        }
+
+        Map<Long, Session> sessionsById = this.sessionRepository.findAllById(ids.getContent()).stream()
+                .collect(Collectors.toMap(Session::getId, Function.identity()));
+        List<Session> ranked = ids.getContent().stream()
+                .map(sessionsById::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+
+        return new PageImpl<>(ranked, ids.getPageable(), ids.getTotalElements());
+    }
+
+    // Delta sync: whether the deletion log still goes back to since
+    public boolean isInChangeLog(Date since) {
+        return this.sessionChangeLog.covers(toLocalDateTime(since));
+    }
+
+    // Sessions created, updated or booked after since, oldest change first
+    public List<Session> findUpdatedSince(Date since) {
+        return this.sessionChangeLog.findUpdatedSince(toLocalDateTime(since));
+    }
+
+    public List<Long> findDeletedSince(Date since) {
+        return this.sessionChangeLog.findDeletedSince(toLocalDateTime(since));
+    }
+
+    public Page<Session> findPage(int page, int size) {
+        return this.sessionRepository.findAll(PageRequest.of(page, size, SESSION_ORDER));
+    }
+
+    public List<Session> findAfter(Date date, Long id, int size) {
+        if (date == null || id == null) {
+            return this.sessionRepository.findAllByOrderByDateAscIdAsc(PageRequest.of(0, size));
+        }
+
+        return this.sessionRepository.findAfter(date, id, PageRequest.of(0, size));
+    }
+
+    // ETag of the session list, to be taken before the list is read
+    public String getListETag() {
+        return this.resourceVersions.sessions().listETag();
+    }
+
+    /**
+     * ETag of one session from its id, updated_at and participant changes, read without loading the row.
+     *
+     * @return the ETag, or {@code null} if the session does not exist
+     */
+    public String getETag(Long id) {
+        return this.sessionRepository.findUpdatedAtById(id)
+                .map(updatedAt -> this.resourceVersions.sessions().itemETag(id, updatedAt))
+                .orElse(null);
+    }
+
     public Session getById(Long id) {
         return this.sessionRepository.findById(id).orElse(null);
     }
 
     public Session update(Long id, Session session) {
         session.setId(id);
-        return this.sessionRepository.save(session);
+        this.bookingEngine.flush();
+        Session updated = this.sessionRepository.save(session);
+        this.bookingEngine.reload(id);
+        this.sessionSearchIndex.index(updated);
+        this.resourceVersions.sessions().changed(id);
+        return updated;
     }
 
-    public void participate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        User user = this.userRepository.findById(userId).orElse(null);
-        if (session == null || user == null) {
+    /**
+     * Books a seat through the in-memory {@link BookingEngine}, or joins the waitlist of a full session;
+     * the PARTICIPATE or WAITLIST row is written shortly after.
+     *
+     * @return {@link BookingOutcome#BOOKED}, or a waitlisted outcome with the 1-based position
+     */
+    public BookingOutcome participate(Long id, Long userId) {
+        if (!this.knownUserIds.exists(userId)) {
+            this.notFoundCounter.increment();
             throw new NotFoundException();
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(alreadyParticipate) {
-            throw new BadRequestException();
+        try {
+            BookingOutcome outcome = this.bookingEngine.book(id, userId);
+            if (outcome.getStatus() == BookingOutcome.Status.BOOKED) {
+                this.bookedCounter.increment();
+            } else {
+                this.waitlistedCounter.increment();
+            }
+            return outcome;
+        } catch (NotFoundException e) {
+            this.notFoundCounter.increment();
+            throw e;
+        } catch (BadRequestException e) {
+            this.conflictCounter.increment();
+            throw e;
         }
-
-        session.getUsers().add(user);
-
-        this.sessionRepository.save(session);
     }
 
+    // Cancelling a booking promotes the head of the waitlist in the same flush
     public void noLongerParticipate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        if (session == null) {
-            throw new NotFoundException();
+        this.bookingEngine.cancel(id, userId);
+    }
+
+    /**
+     * Books a batch through {@link BookingEngine#bookAll}: its rows are written in a transaction of their own
+     * before the answer, and items of a batch the database did not take come back as {@code FAILED}, with
+     * nothing booked. User ids the {@link KnownUserIds} cache does not hold are checked with a single query.
+     *
+     * @return one result per item, in request order
+     */
+    public List<ParticipationResult> participateAll(List<BulkParticipationRequest.Participation> participations) {
+        Set<Long> userIds = participations.stream()
+                .map(BulkParticipationRequest.Participation::getUserId)
+                .collect(Collectors.toSet());
+        Set<Long> existingUserIds = this.knownUserIds.existing(userIds);
+
+        List<BulkParticipationRequest.Participation> known = participations.stream()
+                .filter(participation -> existingUserIds.contains(participation.getUserId()))
+                .collect(Collectors.toList());
+        List<BookingOutcome> outcomes = this.bookingEngine.bookAll(
+                known.stream().map(BulkParticipationRequest.Participation::getSessionId).collect(Collectors.toList()),
+                known.stream().map(BulkParticipationRequest.Participation::getUserId).collect(Collectors.toList()));
+
+        List<ParticipationResult> results = new ArrayList<>(participations.size());
+        int next = 0;
+        for (BulkParticipationRequest.Participation participation : participations) {
+            Long sessionId = participation.getSessionId();
+            Long userId = participation.getUserId();
+            BookingOutcome outcome = existingUserIds.contains(userId) ? outcomes.get(next++) : BookingOutcome.SESSION_NOT_FOUND;
+            results.add(participationResult(sessionId, userId, outcome));
         }
+        return results;
+    }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(!alreadyParticipate) {
-            throw new BadRequestException();
+    private ParticipationResult participationResult(Long sessionId, Long userId, BookingOutcome outcome) {
+        switch (outcome.getStatus()) {
+            case BOOKED:
+                this.bookedCounter.increment();
+                return new ParticipationResult(sessionId, userId, ParticipationResult.Status.BOOKED, null);
+            case SESSION_NOT_FOUND:
+                this.notFoundCounter.increment();
+                return new ParticipationResult(sessionId, userId, ParticipationResult.Status.NOT_FOUND, null);
+            case ALREADY_REGISTERED:
+                this.conflictCounter.increment();
+                return new ParticipationResult(sessionId, userId, ParticipationResult.Status.ALREADY_REGISTERED, null);
+            case NOT_WRITTEN:
+                this.failedCounter.increment();
+                return new ParticipationResult(sessionId, userId, ParticipationResult.Status.FAILED, null);
+            default:
+                this.waitlistedCounter.increment();
+                return new ParticipationResult(sessionId, userId, ParticipationResult.Status.WAITLISTED, outcome.getPosition());
         }
+    }
 
-        session.setUsers(session.getUsers().stream().filter(user -> !user.getId().equals(userId)).collect(Collectors.toList()));
+    public Integer getWaitlistPosition(Long id, Long userId) {
+        return this.bookingEngine.getWaitlistPosition(id, userId);
+    }
+
+    private static Counter bookingCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("yoga.bookings").tag("outcome", outcome).register(meterRegistry);
+    }
 
-        this.sessionRepository.save(session);
+    // updated_at is written in the JVM time zone, like every LocalDateTime column
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
     }
 }
@@ -0,0 +1,104 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openclassrooms.starterjwt.models.Teacher;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Teachers by id, plus the full list served by {@code GET /api/teacher}. Teachers almost never change,
+ * so in steady state neither the teacher endpoints nor session writes read the TEACHERS table.
+ *
+ * <p>Every teacher write evicts its entry and the list through {@link TeacherCacheEvictionListener};
+ * the TTL bounds how long a change made outside the application stays unseen.
+ */
+@Component
+public class TeacherCache implements MeterBinder {
+    private static final Boolean ALL = Boolean.TRUE;
+
+    private final Cache<Long, Teacher> teachersById;
+
+    private final Cache<Boolean, List<Teacher>> allTeachers;
+
+    public TeacherCache(@Value("${oc.app.teacherCacheMaxSize}") long maxSize,
+                        @Value("${oc.app.teacherCacheTtlMs}") long ttlMs) {
+        this.teachersById = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        this.allTeachers = Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, teachersById, "teachers");
+        CaffeineCacheMetrics.monitor(registry, allTeachers, "teacher_list");
+    }
+
+    public Teacher getTeacher(Long id) {
+        return teachersById.getIfPresent(id);
+    }
+
+    // Only the cached teachers are returned, the caller loads the others
+    public Map<Long, Teacher> getTeachers(Collection<Long> ids) {
+        return teachersById.getAllPresent(ids);
+    }
+
+    public List<Teacher> getAllTeachers() {
+        return allTeachers.getIfPresent(ALL);
+    }
+
+    public void putTeacher(Teacher teacher) {
+        teachersById.put(teacher.getId(), teacher);
+    }
+
+    public void putTeachers(Collection<Teacher> teachers) {
+        teachers.forEach(this::putTeacher);
+    }
+
+    public void putAllTeachers(List<Teacher> teachers) {
+        putTeachers(teachers);
+        allTeachers.put(ALL, List.copyOf(teachers));
+    }
+
+    // A changed teacher is also stale in the list, and a new one is missing from it
+    public void evict(Long id) {
+        teachersById.invalidate(id);
+        allTeachers.invalidateAll();
+    }
+
+    public void evictAll() {
+        teachersById.invalidateAll();
+        allTeachers.invalidateAll();
+    }
+
+    public long getHitCount() {
+        return teachersById.stats().hitCount() + allTeachers.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return teachersById.stats().missCount() + allTeachers.stats().missCount();
+    }
+
+    public double getHitRate() {
+        return teachersById.stats().plus(allTeachers.stats()).hitRate();
+    }
+
+    public long getSize() {
+        return teachersById.estimatedSize();
+    }
+}
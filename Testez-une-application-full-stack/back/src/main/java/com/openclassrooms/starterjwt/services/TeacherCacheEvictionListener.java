@@ -0,0 +1,40 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.Teacher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+public class TeacherCacheEvictionListener {
+    @Autowired
+    private TeacherCache teacherCache;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    // Keeps cached teachers, the teacher list and their ETags in line with any write made through JPA
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void evict(Teacher teacher) {
+        Long id = teacher.getId();
+        teacherCache.evict(id);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            resourceVersions.teachers().changed(id);
+            return;
+        }
+
+        // A read between the flush and the commit may have cached the old row again
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                teacherCache.evict(id);
+                resourceVersions.teachers().changed(id);
+            }
+        });
+    }
+}
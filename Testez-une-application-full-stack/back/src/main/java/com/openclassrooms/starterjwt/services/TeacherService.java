@@ -4,21 +4,72 @@ import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+// Reads go through the TeacherCache first, the repository only loads what is missing
 @Service
 public class TeacherService {
     private final TeacherRepository teacherRepository;
 
-    public TeacherService(TeacherRepository teacherRepository) {
+    private final TeacherCache teacherCache;
+
+    private final ResourceVersions resourceVersions;
+
+    public TeacherService(TeacherRepository teacherRepository, TeacherCache teacherCache,
+                          ResourceVersions resourceVersions) {
         this.teacherRepository = teacherRepository;
+        this.teacherCache = teacherCache;
+        this.resourceVersions = resourceVersions;
+    }
+
+    // ETag of the teacher list, to be taken before the list is read
+    public String getListETag() {
+        return this.resourceVersions.teachers().listETag();
+    }
+
+    public String getETag(Teacher teacher) {
+        return this.resourceVersions.teachers().itemETag(teacher.getId(), teacher.getUpdatedAt());
     }
 
     public List<Teacher> findAll() {
-        return this.teacherRepository.findAll();
+        List<Teacher> teachers = this.teacherCache.getAllTeachers();
+        if (teachers == null) {
+            teachers = this.teacherRepository.findAll();
+            this.teacherCache.putAllTeachers(teachers);
+        }
+
+        return teachers;
+    }
+
+    public List<Teacher> findAllById(Collection<Long> ids) {
+        Map<Long, Teacher> cached = this.teacherCache.getTeachers(ids);
+        List<Teacher> teachers = new ArrayList<>(cached.values());
+
+        Set<Long> missing = new HashSet<>(ids);
+        missing.removeAll(cached.keySet());
+        if (!missing.isEmpty()) {
+            List<Teacher> loaded = this.teacherRepository.findAllById(missing);
+            this.teacherCache.putTeachers(loaded);
+            teachers.addAll(loaded);
+        }
+
+        return teachers;
     }
 
     public Teacher findById(Long id) {
-        return this.teacherRepository.findById(id).orElse(null);
+        Teacher teacher = this.teacherCache.getTeacher(id);
+        if (teacher == null) {
+            teacher = this.teacherRepository.findById(id).orElse(null);
+            if (teacher != null) {
+                this.teacherCache.putTeacher(teacher);
+            }
+        }
+
+        return teacher;
     }
 }
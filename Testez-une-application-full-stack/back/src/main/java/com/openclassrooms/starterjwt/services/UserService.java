@@ -2,18 +2,46 @@ package com.openclassrooms.starterjwt.services;
 
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationRegistry;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.List;
+
 @Service
 public class UserService {
     private final UserRepository userRepository;
 
-    public UserService(UserRepository userRepository) {
+    private final UserDetailsCache userDetailsCache;
+
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+
+    private final KnownUserIds knownUserIds;
+
+    public UserService(UserRepository userRepository,
+                       UserDetailsCache userDetailsCache,
+                       TokenRevocationRegistry tokenRevocationRegistry,
+                       KnownUserIds knownUserIds) {
         this.userRepository = userRepository;
+        this.userDetailsCache = userDetailsCache;
+        this.tokenRevocationRegistry = tokenRevocationRegistry;
+        this.knownUserIds = knownUserIds;
     }
 
     public void delete(Long id) {
         this.userRepository.deleteById(id);
+        this.tokenRevocationRegistry.revoke(id);
+        this.userDetailsCache.removeUserFromCacheById(id);
+        this.knownUserIds.forget(id);
+    }
+
+    public List<User> findAllById(Collection<Long> ids) {
+        return this.userRepository.findAllById(ids);
+    }
+
+    public boolean exists(Long id) {
+        return this.knownUserIds.exists(id);
     }
 
     public User findById(Long id) {
@@ -0,0 +1,83 @@
+package com.openclassrooms.starterjwt;
+
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AuthControllerIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.findByEmail("login.admin@test.com").ifPresent(userRepository::delete);
+        userRepository.save(new User("login.admin@test.com", "Admin", "Login",
+                passwordEncoder.encode("password123"), true));
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void login_ShouldLoadTheUserOnce() throws Exception {
+        String jsonRequest = "{\"email\":\"login.admin@test.com\",\"password\":\"password123\"}";
+
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(jsonRequest))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.admin").value(true));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void login_WithOutdatedHashCost_ShouldRehashThePassword() throws Exception {
+        userRepository.findByEmail("login.legacy@test.com").ifPresent(userRepository::delete);
+        userRepository.save(new User("login.legacy@test.com", "Legacy", "Login",
+                new BCryptPasswordEncoder(4).encode("password123"), false));
+        String jsonRequest = "{\"email\":\"login.legacy@test.com\",\"password\":\"password123\"}";
+
+        mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(jsonRequest))
+                .andExpect(status().isOk());
+
+        String storedHash = userRepository.findByEmail("login.legacy@test.com").get().getPassword();
+        assertTrue(storedHash.startsWith("$2a$10$"));
+        assertTrue(passwordEncoder.matches("password123", storedHash));
+    }
+}
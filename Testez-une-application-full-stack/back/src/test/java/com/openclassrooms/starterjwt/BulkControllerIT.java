@@ -0,0 +1,190 @@
+package com.openclassrooms.starterjwt;
+
+import com.jayway.jsonpath.JsonPath;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Date;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class BulkControllerIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Value("${oc.app.jwtSecret}")
+    private String jwtSecret;
+
+    private Teacher teacher;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        sessionRepository.deleteAll();
+        teacherRepository.deleteAll();
+        userRepository.deleteAll();
+
+        teacher = teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("Delahaye"));
+        user = userRepository.save(new User("yogi@test.com", "Doe", "John", "password", false));
+    }
+
+    @Test
+    @WithMockUser(username = "user@studio.com")
+    void bulkEndpoints_ShouldBeRestrictedToAdmins() throws Exception {
+        mockMvc.perform(get("/api/bulk/users"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/api/bulk/users").content("{\"id\":1}"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void export_ShouldStreamTheTableAsCsv() throws Exception {
+        MvcResult started = mockMvc.perform(get("/api/bulk/teachers").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().string(startsWith("id,last_name,first_name,created_at,updated_at\n")))
+                .andExpect(content().string(containsString(teacher.getId() + ",Delahaye,Margot,")));
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void importRows_ShouldResumeAfterTheLastCommittedBatch() throws Exception {
+        String firstTry = sessionLine(900_001) + sessionLine(900_002) + sessionLine(900_003)
+                + "{\"id\":\"not a number\"}\n";
+        String fixed = sessionLine(900_001) + sessionLine(900_002) + sessionLine(900_003) + sessionLine(900_004);
+
+        mockMvc.perform(post("/api/bulk/sessions").param("importId", "studio-42").param("batchSize", "2")
+                        .content(firstTry))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.committed", is(2)))
+                .andExpect(jsonPath("$.imported", is(2)));
+        assertEquals(2, sessionRepository.count());
+
+        mockMvc.perform(post("/api/bulk/sessions").param("importId", "studio-42").param("batchSize", "2")
+                        .content(fixed))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported", is(2)))
+                .andExpect(jsonPath("$.committed", is(4)));
+        assertEquals(4, sessionRepository.count());
+
+        // The id is bound to the table it started with
+        mockMvc.perform(post("/api/bulk/teachers").param("importId", "studio-42").content(""))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void importRows_ShouldMakeImportedParticipantsVisible() throws Exception {
+        mockMvc.perform(post("/api/bulk/sessions").content(sessionLine(900_010)))
+                .andExpect(status().isOk());
+        // Loads the seats of the session into the booking engine
+        mockMvc.perform(get("/api/session/{id}/waitlist/{userId}", 900_010, user.getId()));
+
+        mockMvc.perform(post("/api/bulk/participate").param("format", "csv")
+                        .content("session_id,user_id\n900010," + user.getId() + "\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.committed", is(1)));
+
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = 900010", Integer.class));
+        mockMvc.perform(get("/api/session/{id}", 900_010))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users[0]", is(user.getId().intValue())));
+        // The booking engine reloads the seats and refuses a second booking
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", 900_010, user.getId()))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void importRows_OverADeletedUser_ShouldLetTheImportedUserLogIn() throws Exception {
+        String password = passwordEncoder.encode("password123");
+        Long id = userRepository.save(new User("reused@test.com", "Gone", "Deleted", password, false)).getId();
+        mockMvc.perform(delete("/api/user/{id}", id)
+                        .header("Authorization", "Bearer " + login("reused@test.com")))
+                .andExpect(status().isOk());
+        // Issued to the deleted user before it was deleted
+        Date issuedAt = new Date(System.currentTimeMillis() - 60_000);
+        String staleToken = Jwts.builder()
+                .setSubject("reused@test.com")
+                .setIssuedAt(issuedAt)
+                .setExpiration(new Date(issuedAt.getTime() + 3_600_000))
+                .signWith(SignatureAlgorithm.HS512, jwtSecret)
+                .compact();
+
+        mockMvc.perform(post("/api/bulk/users").with(user("admin@studio.com").roles("ADMIN"))
+                        .content("{\"id\":" + id + ",\"email\":\"reused@test.com\",\"last_name\":\"Back\","
+                                + "\"first_name\":\"Imported\",\"password\":\"" + password + "\",\"admin\":false,"
+                                + "\"created_at\":\"2024-03-01T18:30:00\",\"updated_at\":\"2024-03-01T18:30:00\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.committed", is(1)));
+
+        mockMvc.perform(get("/api/user/{id}", id)
+                        .header("Authorization", "Bearer " + login("reused@test.com")))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstName", is("Imported")));
+        mockMvc.perform(get("/api/user/{id}", id)
+                        .header("Authorization", "Bearer " + staleToken))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private String login(String email) throws Exception {
+        MvcResult result = mockMvc.perform(post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"" + email + "\",\"password\":\"password123\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        return JsonPath.read(result.getResponse().getContentAsString(), "$.token");
+    }
+
+    private String sessionLine(long id) {
+        return "{\"id\":" + id + ",\"name\":\"Imported " + id + "\",\"date\":\"2024-03-01T18:30:00\","
+                + "\"description\":\"Migrated\",\"capacity\":10,\"teacher_id\":" + teacher.getId() + "}\n";
+    }
+}
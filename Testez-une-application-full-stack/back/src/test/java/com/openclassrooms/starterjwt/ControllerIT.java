@@ -16,9 +16,15 @@ import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import javax.persistence.EntityManagerFactory;
 import java.time.LocalDateTime;
 import java.util.Date;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -39,6 +45,9 @@ public class ControllerIT {
     @Autowired
     private SessionRepository sessionRepository;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @Test
     public void testGetSessionsWithoutAuth() throws Exception {
         mockMvc.perform(get("/api/sessions"))
@@ -246,4 +255,31 @@ public class ControllerIT {
                 .andExpect(status().isNotFound());
     }
 
-}
\ No newline at end of file
+    @Test
+    @WithMockUser
+    public void testTeacherReadsAreServedFromCacheUntilAWrite() throws Exception {
+        Teacher teacher = teacherRepository.save(Teacher.builder()
+                .firstName("Cached")
+                .lastName("Teacher")
+                .build());
+        mockMvc.perform(get("/api/teacher/" + teacher.getId())).andExpect(status().isOk());
+        mockMvc.perform(get("/api/teacher")).andExpect(status().isOk());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get("/api/teacher/" + teacher.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.firstName").value("Cached"));
+        mockMvc.perform(get("/api/teacher"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[?(@.id == " + teacher.getId() + ")].firstName").value("Cached"));
+        assertEquals(0, statistics.getPrepareStatementCount());
+
+        teacherRepository.save(teacher.setFirstName("Renamed"));
+
+        mockMvc.perform(get("/api/teacher/" + teacher.getId()))
+                .andExpect(jsonPath("$.firstName").value("Renamed"));
+        mockMvc.perform(get("/api/teacher"))
+                .andExpect(jsonPath("$[?(@.id == " + teacher.getId() + ")].firstName").value("Renamed"));
+    }
+}
@@ -0,0 +1,121 @@
+package com.openclassrooms.starterjwt;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Date;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+@ActiveProfiles("test")
+class MetricsIT {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Session session;
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        sessionRepository.deleteAll();
+        teacherRepository.deleteAll();
+        userRepository.deleteAll();
+
+        Teacher teacher = teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("Delahaye"));
+        user = userRepository.save(new User("yogi@test.com", "Doe", "John", "password", false));
+        session = sessionRepository.save(new Session().setName("Yin").setDate(new Date())
+                .setDescription("Slow").setTeacher(teacher));
+    }
+
+    @Test
+    void prometheus_ShouldRequireAToken() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/env"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @WithMockUser(username = "yogi@test.com")
+    void prometheus_ShouldBeForbiddenToNonAdmins() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @WithMockUser(username = "yogi@test.com", roles = "ADMIN")
+    void prometheus_ShouldExposeRequestServiceBookingAndStatementMetrics() throws Exception {
+        mockMvc.perform(get("/api/session/{id}", session.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", session.getId(), user.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", session.getId(), user.getId()))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("hikaricp_connections")))
+                .andExpect(content().string(containsString(
+                        "http_server_requests_seconds_bucket{application=\"yoga-app\",exception=\"None\",method=\"GET\"")))
+                .andExpect(content().string(containsString("uri=\"/api/session/{id}\"")))
+                .andExpect(content().string(containsString(
+                        "yoga_service_seconds_count{application=\"yoga-app\",class=\"SessionService\",exception=\"none\",method=\"participate\",}")))
+                .andExpect(content().string(containsString(
+                        "yoga_bookings_total{application=\"yoga-app\",outcome=\"conflict\",}")))
+                .andExpect(content().string(containsString(
+                        "yoga_hibernate_statements_count{application=\"yoga-app\",method=\"GET\",uri=\"/api/session/{id}\",}")))
+                .andExpect(content().string(containsString("spring_data_repository_invocations_seconds")));
+    }
+
+    @Test
+    @WithMockUser(username = "yogi@test.com", roles = "ADMIN")
+    void prometheus_ShouldExposeCacheAndPasswordHashingMetrics() throws Exception {
+        mockMvc.perform(get("/api/teacher"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString(
+                        "cache_gets_total{application=\"yoga-app\",cache=\"user_details\",result=\"hit\",}")))
+                .andExpect(content().string(containsString(
+                        "cache_gets_total{application=\"yoga-app\",cache=\"teachers\",result=\"miss\",}")))
+                .andExpect(content().string(containsString(
+                        "cache_gets_total{application=\"yoga-app\",cache=\"teacher_list\",result=\"miss\",}")))
+                .andExpect(content().string(containsString(
+                        "yoga_password_hashing_queue{application=\"yoga-app\",} 0.0")))
+                .andExpect(content().string(containsString(
+                        "yoga_password_hashing_active{application=\"yoga-app\",}")));
+    }
+}
@@ -1,27 +1,52 @@
 package com.openclassrooms.starterjwt;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.services.BookingEngine;
+import com.openclassrooms.starterjwt.services.BookingOutcome;
+import com.openclassrooms.starterjwt.services.SessionService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -30,6 +55,10 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @ActiveProfiles("test")
 class SessionControllerIT {
 
+    // The format of @DateTimeFormat(iso = DATE_TIME) request parameters
+    private static final DateTimeFormatter ISO_DATE_TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSXXX").withZone(ZoneOffset.UTC);
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -45,6 +74,18 @@ class SessionControllerIT {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private BookingEngine bookingEngine;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     private Teacher teacher;
     private User user;
 
@@ -73,4 +114,588 @@ class SessionControllerIT {
 
         assertEquals(0, sessionRepository.count());
     }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void deleteSession_WithQueuedBookings_ShouldLeaveNoParticipantOrWaitingRow() throws Exception {
+        Session session = sessionRepository.save(Session.builder()
+                .name("Full")
+                .description("To delete")
+                .capacity(1)
+                .teacher(teacher)
+                .date(new Date())
+                .build());
+        User waiting = userRepository.save(new User("waiting@test.com", "Wait", "Ing", "password", false));
+        long lostWrites = bookingEngine.getLostWriteCount();
+        // Not flushed yet: the delete writes them first, then the foreign keys remove them
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", session.getId(), user.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", session.getId(), waiting.getId()))
+                .andExpect(status().isAccepted());
+
+        mockMvc.perform(delete("/api/session/{id}", session.getId()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", session.getId(), waiting.getId()))
+                .andExpect(status().isNotFound());
+        bookingEngine.flush();
+        assertEquals(lostWrites, bookingEngine.getLostWriteCount());
+        assertEquals(0, participantRowCount(session.getId()));
+        assertEquals(0, waitlistRowCount(session.getId()));
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void findSessionsByKeysetPages() throws Exception {
+        Date date = new Date(1_700_000_000_000L);
+        for (int i = 0; i < 3; i++) {
+            sessionRepository.save(Session.builder()
+                    .name("Session " + i)
+                    .description("Keyset")
+                    .teacher(teacher)
+                    .date(date)
+                    .build());
+        }
+
+        String firstPage = mockMvc.perform(get("/api/session").param("cursor", "").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(2)))
+                .andExpect(jsonPath("$.content[0].name", is("Session 0")))
+                .andReturn().getResponse().getContentAsString();
+        String cursor = objectMapper.readTree(firstPage).get("nextCursor").asText();
+
+        mockMvc.perform(get("/api/session").param("cursor", cursor).param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].name", is("Session 2")))
+                .andExpect(jsonPath("$.nextCursor", nullValue()));
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void findSessionsByOffsetPage() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            sessionRepository.save(Session.builder()
+                    .name("Session " + i)
+                    .description("Offset")
+                    .teacher(teacher)
+                    .date(new Date(1_700_000_000_000L + i))
+                    .build());
+        }
+
+        mockMvc.perform(get("/api/session").param("page", "1").param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.totalElements", is(3)))
+                .andExpect(jsonPath("$.page", is(1)));
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void participate_ShouldWriteASingleRowAndRejectDuplicates() throws Exception {
+        Session session = sessionRepository.save(Session.builder()
+                .name("Booking")
+                .description("Participate")
+                .teacher(teacher)
+                .date(new Date())
+                .build());
+
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", session.getId(), user.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", session.getId(), user.getId()))
+                .andExpect(status().isBadRequest());
+        bookingEngine.flush();
+        assertEquals(1, sessionRepository.findById(session.getId()).orElseThrow().getUsers().size());
+
+        mockMvc.perform(delete("/api/session/{id}/participate/{userId}", session.getId(), user.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/session/{id}/participate/{userId}", session.getId(), user.getId()))
+                .andExpect(status().isBadRequest());
+        bookingEngine.flush();
+        assertEquals(0, sessionRepository.findById(session.getId()).orElseThrow().getUsers().size());
+    }
+
+    @Test
+    void participate_ConcurrentBookings_ShouldFillExactlyTheCapacity() throws Exception {
+        Session session = sessionRepository.save(Session.builder()
+                .name("Popular")
+                .description("Opens at noon")
+                .capacity(5)
+                .teacher(teacher)
+                .date(new Date())
+                .build());
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            users.add(userRepository.save(new User("rush" + i + "@test.com", "Rush", "User", "password", false)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (User rushUser : users) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                if (sessionService.participate(session.getId(), rushUser.getId()) .getStatus() == BookingOutcome.Status.BOOKED) {
+                    accepted.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        bookingEngine.flush();
+
+        assertEquals(5, accepted.get());
+        assertEquals(5, sessionRepository.findById(session.getId()).orElseThrow().getUsers().size());
+        assertEquals(35, waitlistRowCount(session.getId()));
+    }
+
+    @Test
+    void participate_WhileTheSessionIsUpdated_ShouldNeverOverbook() throws Exception {
+        Session session = sessionRepository.save(Session.builder()
+                .name("Popular")
+                .description("Edited during the rush")
+                .capacity(5)
+                .teacher(teacher)
+                .date(new Date())
+                .build());
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            users.add(userRepository.save(new User("storm" + i + "@test.com", "Storm", "User", "password", false)));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(17);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger maxBooked = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (User stormUser : users) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 20; i++) {
+                    try {
+                        // Those booked give their seat back half of the time, so seats keep changing hands
+                        if (sessionService.participate(session.getId(), stormUser.getId()) .getStatus() == BookingOutcome.Status.BOOKED
+                                || i % 2 == 0) {
+                            sessionService.noLongerParticipate(session.getId(), stormUser.getId());
+                        }
+                    } catch (BadRequestException e) {
+                        // Already booked or waiting from an earlier round
+                    }
+                    maxBooked.accumulateAndGet(bookingEngine.getBookedSeats(session.getId()), Math::max);
+                }
+                return null;
+            }));
+        }
+        // Each update drops the seats of the session from the booking engine while bookings go on
+        futures.add(executor.submit(() -> {
+            start.await();
+            for (int i = 0; i < 30; i++) {
+                Session current = sessionRepository.findById(session.getId()).orElseThrow();
+                current.setDescription("Edit " + i);
+                sessionService.update(session.getId(), current);
+            }
+            return null;
+        }));
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        bookingEngine.flush();
+
+        assertTrue(maxBooked.get() <= 5, "booked seats peaked at " + maxBooked.get());
+        assertTrue(participantRowCount(session.getId()) <= 5,
+                participantRowCount(session.getId()) + " participants for 5 seats");
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void noLongerParticipate_ShouldPromoteTheFirstWaitingUser() throws Exception {
+        Session session = sessionRepository.save(Session.builder()
+                .name("Full")
+                .description("Waitlist")
+                .capacity(1)
+                .teacher(teacher)
+                .date(new Date())
+                .build());
+        User waiting = userRepository.save(new User("waiting@test.com", "Wait", "Ing", "password", false));
+
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", session.getId(), user.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", session.getId(), waiting.getId()))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.position", is(1)));
+        mockMvc.perform(get("/api/session/{id}/waitlist/{userId}", session.getId(), waiting.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.position", is(1)));
+
+        mockMvc.perform(delete("/api/session/{id}/participate/{userId}", session.getId(), user.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/session/{id}/waitlist/{userId}", session.getId(), waiting.getId()))
+                .andExpect(status().isNotFound());
+        bookingEngine.flush();
+
+        List<User> participants = sessionRepository.findById(session.getId()).orElseThrow().getUsers();
+        assertEquals(List.of(waiting.getId()), List.of(participants.get(0).getId()));
+        assertEquals(1, participants.size());
+        assertEquals(0, waitlistRowCount(session.getId()));
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void update_RaisingTheCapacity_ShouldPromoteTheWaitingUsers() throws Exception {
+        Session session = sessionRepository.save(Session.builder()
+                .name("Full")
+                .description("Moved to a bigger room")
+                .capacity(1)
+                .teacher(teacher)
+                .date(new Date())
+                .build());
+        User waiting = userRepository.save(new User("waiting@test.com", "Wait", "Ing", "password", false));
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", session.getId(), user.getId()))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", session.getId(), waiting.getId()))
+                .andExpect(status().isAccepted());
+        bookingEngine.flush();
+
+        Session bigger = sessionRepository.findById(session.getId()).orElseThrow();
+        bigger.setCapacity(2);
+        sessionService.update(session.getId(), bigger);
+
+        mockMvc.perform(get("/api/session/{id}/waitlist/{userId}", session.getId(), waiting.getId()))
+                .andExpect(status().isNotFound());
+        bookingEngine.flush();
+        assertEquals(2, participantRowCount(session.getId()));
+        assertEquals(0, waitlistRowCount(session.getId()));
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void participateAll_ShouldReturnAResultPerItem() throws Exception {
+        Session session = sessionRepository.save(Session.builder()
+                .name("Group")
+                .description("Bulk")
+                .capacity(2)
+                .teacher(teacher)
+                .date(new Date())
+                .build());
+        User second = userRepository.save(new User("second@test.com", "Second", "User", "password", false));
+        User third = userRepository.save(new User("third@test.com", "Third", "User", "password", false));
+
+        String body = "{\"participations\":["
+                + "{\"sessionId\":" + session.getId() + ",\"userId\":" + user.getId() + "},"
+                + "{\"sessionId\":" + session.getId() + ",\"userId\":" + second.getId() + "},"
+                + "{\"sessionId\":" + session.getId() + ",\"userId\":" + third.getId() + "},"
+                + "{\"sessionId\":" + session.getId() + ",\"userId\":" + user.getId() + "},"
+                + "{\"sessionId\":" + session.getId() + ",\"userId\":999999}]}";
+
+        mockMvc.perform(post("/api/session/participate").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(5)))
+                .andExpect(jsonPath("$[0].status", is("BOOKED")))
+                .andExpect(jsonPath("$[1].status", is("BOOKED")))
+                .andExpect(jsonPath("$[2].status", is("WAITLISTED")))
+                .andExpect(jsonPath("$[2].position", is(1)))
+                .andExpect(jsonPath("$[3].status", is("ALREADY_REGISTERED")))
+                .andExpect(jsonPath("$[4].status", is("NOT_FOUND")));
+
+        assertEquals(2, sessionRepository.findById(session.getId()).orElseThrow().getUsers().size());
+        assertEquals(1, waitlistRowCount(session.getId()));
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void findUserSessions_ShouldOnlyReturnTheUserBookingsInRange() throws Exception {
+        Date early = new Date(1_700_000_000_000L);
+        Date late = new Date(1_800_000_000_000L);
+        Session booked = sessionRepository.save(Session.builder().name("Booked").description("Mine")
+                .teacher(teacher).date(early).users(List.of(user)).build());
+        sessionRepository.save(Session.builder().name("Later").description("Mine")
+                .teacher(teacher).date(late).users(List.of(user)).build());
+        sessionRepository.save(Session.builder().name("Other").description("Not mine")
+                .teacher(teacher).date(early).build());
+
+        mockMvc.perform(get("/api/user/{id}/sessions", user.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].name", is("Booked")))
+                .andExpect(jsonPath("$[0].teacher_id", is(teacher.getId().intValue())));
+
+        mockMvc.perform(get("/api/user/{id}/sessions", user.getId())
+                        .param("to", "2025-01-01T00:00:00.000Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id", is(booked.getId().intValue())));
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void searchSessions_ShouldFilterByWindowTeacherAndFreeSeats() throws Exception {
+        Teacher other = teacherRepository.save(new Teacher().setFirstName("Jane").setLastName("Roe"));
+        Date inWindow = new Date(1_700_000_000_000L);
+        sessionRepository.save(Session.builder().name("Full").description("Search").capacity(1)
+                .teacher(teacher).date(inWindow).users(List.of(user)).build());
+        sessionRepository.save(Session.builder().name("Open").description("Search").capacity(2)
+                .teacher(teacher).date(new Date(inWindow.getTime() + 1_000)).users(List.of(user)).build());
+        sessionRepository.save(Session.builder().name("Other teacher").description("Search")
+                .teacher(other).date(inWindow).build());
+        sessionRepository.save(Session.builder().name("Too late").description("Search")
+                .teacher(teacher).date(new Date(inWindow.getTime() + 30L * 24 * 60 * 60 * 1000)).build());
+
+        mockMvc.perform(get("/api/session/search")
+                        .param("from", "2023-11-01T00:00:00.000Z")
+                        .param("to", "2023-11-30T00:00:00.000Z")
+                        .param("sort", "date")
+                        .param("direction", "desc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(3)))
+                .andExpect(jsonPath("$.totalElements", is(3)))
+                .andExpect(jsonPath("$.content[0].name", is("Open")));
+
+        mockMvc.perform(get("/api/session/search")
+                        .param("from", "2023-11-01T00:00:00.000Z")
+                        .param("to", "2023-11-30T00:00:00.000Z")
+                        .param("sort", "name")
+                        .param("page", "1")
+                        .param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.page", is(1)))
+                .andExpect(jsonPath("$.totalElements", is(3)))
+                .andExpect(jsonPath("$.content[*].name", contains("Other teacher")));
+
+        mockMvc.perform(get("/api/session/search")
+                        .param("from", "2023-11-01T00:00:00.000Z")
+                        .param("to", "2023-11-30T00:00:00.000Z")
+                        .param("teacherId", teacher.getId().toString())
+                        .param("freeSeats", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].name", is("Open")));
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void searchSessions_WithFreeSeats_ShouldCountTheQueuedBookings() throws Exception {
+        Date inWindow = new Date(1_700_000_000_000L);
+        Session open = sessionRepository.save(Session.builder().name("Last seat").description("Search").capacity(1)
+                .teacher(teacher).date(inWindow).build());
+        // Taken in the booking engine, not yet written to PARTICIPATE
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", open.getId(), user.getId()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/session/search")
+                        .param("from", "2023-11-01T00:00:00.000Z")
+                        .param("to", "2023-11-30T00:00:00.000Z")
+                        .param("freeSeats", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(0)));
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void searchSessionsByText_ShouldRankMatchesAndFollowWrites() throws Exception {
+        Session inDescription = sessionService.create(Session.builder().name("Evening class")
+                .description("Slow kundalini breathing").teacher(teacher).date(new Date()).build());
+        Session inName = sessionService.create(Session.builder().name("Kundalini")
+                .description("Energy work").teacher(teacher).date(new Date()).build());
+        Session removed = sessionService.create(Session.builder().name("Kundalini basics")
+                .description("Removed").teacher(teacher).date(new Date()).build());
+
+        inDescription.setDescription("Slow breathing");
+        sessionService.update(inDescription.getId(), inDescription);
+        sessionService.delete(removed.getId());
+
+        mockMvc.perform(get("/api/session/search").param("q", "kundalini"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements", is(1)))
+                .andExpect(jsonPath("$.content[0].id", is(inName.getId().intValue())));
+
+        mockMvc.perform(get("/api/session/search").param("q", "slow breathing"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].name", is("Evening class")));
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void conditionalGet_ShouldAnswer304UntilTheSessionChanges() throws Exception {
+        Session session = sessionService.create(Session.builder().name("Polled").description("ETag")
+                .teacher(teacher).date(new Date()).build());
+
+        String listETag = mockMvc.perform(get("/api/session"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        String sessionETag = mockMvc.perform(get("/api/session/{id}", session.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get("/api/session").header("If-None-Match", listETag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        assertEquals(0, statistics.getPrepareStatementCount());
+        mockMvc.perform(get("/api/session/{id}", session.getId()).header("If-None-Match", sessionETag))
+                .andExpect(status().isNotModified());
+        assertEquals(0, statistics.getEntityLoadCount());
+
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", session.getId(), user.getId()))
+                .andExpect(status().isOk());
+        bookingEngine.flush();
+
+        mockMvc.perform(get("/api/session").header("If-None-Match", listETag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].users[0]", is(user.getId().intValue())));
+        mockMvc.perform(get("/api/session/{id}", session.getId()).header("If-None-Match", sessionETag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(1)));
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void findChanges_ShouldReturnUpdatesBookingsAndTombstones() throws Exception {
+        Session booked = sessionRepository.save(Session.builder().name("Booked").description("Sync")
+                .teacher(teacher).date(new Date()).build());
+        Session untouched = sessionRepository.save(Session.builder().name("Untouched").description("Sync")
+                .teacher(teacher).date(new Date()).build());
+        jdbcTemplate.update("UPDATE SESSIONS SET updated_at = ?", LocalDateTime.now().minusHours(1));
+        Instant since = Instant.now().minusSeconds(60);
+
+        Session created = sessionService.create(Session.builder().name("Created").description("Sync")
+                .teacher(teacher).date(new Date()).build());
+        Session removed = sessionService.create(Session.builder().name("Removed").description("Sync")
+                .teacher(teacher).date(new Date()).build());
+        sessionService.delete(removed.getId());
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", booked.getId(), user.getId()))
+                .andExpect(status().isOk());
+        bookingEngine.flush();
+
+        mockMvc.perform(get("/api/session/changes").param("since", ISO_DATE_TIME.format(since)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.fullSync", is(false)))
+                .andExpect(jsonPath("$.updated[*].id", containsInAnyOrder(
+                        booked.getId().intValue(), created.getId().intValue())))
+                .andExpect(jsonPath("$.updated[?(@.id == " + booked.getId() + ")].users[0]").value(user.getId().intValue()))
+                .andExpect(jsonPath("$.deleted", contains(removed.getId().intValue())))
+                .andExpect(jsonPath("$.updated[?(@.id == " + untouched.getId() + ")]").isEmpty());
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void findChanges_AboveTheBatchSize_ShouldLoadParticipantsPerHundredSessions() throws Exception {
+        Instant since = Instant.now().minusSeconds(60);
+        List<Session> sessions = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            sessions.add(Session.builder().name("Session " + i).description("Sync")
+                    .teacher(teacher).users(List.of(user)).date(new Date()).build());
+        }
+        sessionRepository.saveAll(sessions);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        mockMvc.perform(get("/api/session/changes").param("since", ISO_DATE_TIME.format(since)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated", hasSize(150)))
+                .andExpect(jsonPath("$.updated[149].users", contains(user.getId().intValue())));
+
+        // The sessions, two batches of participants (100 and 50) and the tombstones
+        assertEquals(4, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void findChanges_BeforeTheChangeLog_ShouldReadTheListingProjection() throws Exception {
+        Session booked = sessionRepository.save(Session.builder().name("Booked").description("Sync")
+                .teacher(teacher).users(List.of(user)).date(new Date()).build());
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        mockMvc.perform(get("/api/session/changes").param("since", ISO_DATE_TIME.format(Instant.EPOCH)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.fullSync", is(true)))
+                .andExpect(jsonPath("$.updated[*].id", contains(booked.getId().intValue())))
+                .andExpect(jsonPath("$.updated[0].users", contains(user.getId().intValue())));
+
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void export_ShouldStreamEverySessionInTheShapeOfTheReads() throws Exception {
+        sessionRepository.deleteAll();
+        Session booked = sessionRepository.save(Session.builder().name("Booked").description("Export")
+                .teacher(teacher).date(new Date()).build());
+        Session empty = sessionRepository.save(Session.builder().name("Empty").description("Export")
+                .teacher(teacher).date(new Date()).build());
+        // Still queued in the booking engine when the export starts
+        mockMvc.perform(post("/api/session/{id}/participate/{userId}", booked.getId(), user.getId()))
+                .andExpect(status().isOk());
+
+        MvcResult started = mockMvc.perform(get("/api/session/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String export = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[*].id", contains(booked.getId().intValue(), empty.getId().intValue())))
+                .andExpect(jsonPath("$[0].users", contains(user.getId().intValue())))
+                .andExpect(jsonPath("$[1].users", hasSize(0)))
+                .andReturn().getResponse().getContentAsString();
+
+        String read = mockMvc.perform(get("/api/session/{id}", booked.getId()))
+                .andReturn().getResponse().getContentAsString();
+        assertEquals(objectMapper.readTree(read), objectMapper.readTree(export).get(0));
+    }
+
+    @Test
+    @WithMockUser(username = "john.doe@test.com")
+    void export_AsNonAdmin_ShouldBeForbidden() throws Exception {
+        mockMvc.perform(get("/api/session/export"))
+                .andExpect(status().isForbidden());
+    }
+
+    private int participantRowCount(Long sessionId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = ?", Integer.class, sessionId);
+    }
+
+    private int waitlistRowCount(Long sessionId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM WAITLIST WHERE session_id = ?", Integer.class, sessionId);
+    }
+
+    @Test
+    @WithMockUser(username = "admin@studio.com", roles = "ADMIN")
+    void findAllSessions_ShouldUseAConstantNumberOfStatements() throws Exception {
+        // One projection query for the sessions, one for all the participant ids
+        assertEquals(2, listingStatementCount(3));
+        assertEquals(2, listingStatementCount(13));
+    }
+
+    private long listingStatementCount(int sessionCount) throws Exception {
+        sessionRepository.deleteAll();
+        for (int i = 0; i < sessionCount; i++) {
+            sessionRepository.save(Session.builder()
+                    .name("Session " + i)
+                    .description("Listing")
+                    .teacher(teacher)
+                    .users(List.of(user))
+                    .date(new Date())
+                    .build());
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        mockMvc.perform(get("/api/session"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(sessionCount)))
+                .andExpect(jsonPath("$[0].users[0]", is(user.getId().intValue())));
+        assertEquals(0, statistics.getEntityLoadCount());
+
+        return statistics.getPrepareStatementCount();
+    }
 }
@@ -145,11 +145,12 @@ class SessionUnityTest {
         teacher.setId(1L);
         List<User> users = Arrays.asList(new User(), new User());
 
-        Session sessionFull = new Session(1L, "Full Session", sessionDate, "Full description", teacher, users, now, now);
+        Session sessionFull = new Session(1L, "Full Session", sessionDate, "Full description", 12, teacher, users, now, now);
         assertThat(sessionFull.getId()).isEqualTo(1L);
         assertThat(sessionFull.getName()).isEqualTo("Full Session");
         assertThat(sessionFull.getDate()).isEqualTo(sessionDate);
         assertThat(sessionFull.getDescription()).isEqualTo("Full description");
+        assertThat(sessionFull.getCapacity()).isEqualTo(12);
         assertThat(sessionFull.getTeacher()).isEqualTo(teacher);
         assertThat(sessionFull.getUsers()).isEqualTo(users);
         assertThat(sessionFull.getCreatedAt()).isEqualTo(now);
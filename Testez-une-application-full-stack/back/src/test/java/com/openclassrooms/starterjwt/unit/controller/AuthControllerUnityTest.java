@@ -4,6 +4,7 @@ import com.openclassrooms.starterjwt.controllers.AuthController;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
+import com.openclassrooms.starterjwt.payload.response.JwtResponse;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
@@ -26,6 +27,8 @@ import com.openclassrooms.starterjwt.mapper.UserMapper;
 import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -80,6 +83,7 @@ public class AuthControllerUnityTest {
         userDetails = UserDetailsImpl.builder()
                 .username("yoga@studio.com")
                 .password("test!1234")
+                .admin(true)
                 .build();
     }
 
@@ -90,7 +94,6 @@ public class AuthControllerUnityTest {
                 .thenReturn(authentication);
         when(authentication.getPrincipal()).thenReturn(userDetails);
         when(jwtUtils.generateJwtToken(authentication)).thenReturn("fake-jwt-token");
-        when(userRepository.findByEmail(userDetails.getUsername())).thenReturn(Optional.of(user));
 
         // When
         ResponseEntity<?> response = authController.authenticateUser(loginRequest);
@@ -98,6 +101,8 @@ public class AuthControllerUnityTest {
         // Then
         assertTrue(response.getStatusCode().is2xxSuccessful());
         assertNotNull(response.getBody());
+        assertTrue(((JwtResponse) response.getBody()).getAdmin());
+        verify(userRepository, never()).findByEmail(any());
     }
 
     @Test
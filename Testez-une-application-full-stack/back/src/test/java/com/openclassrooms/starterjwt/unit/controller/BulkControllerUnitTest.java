@@ -0,0 +1,103 @@
+package com.openclassrooms.starterjwt.unit.controller;
+
+import com.openclassrooms.starterjwt.controllers.BulkController;
+import com.openclassrooms.starterjwt.payload.response.BulkImportResult;
+import com.openclassrooms.starterjwt.services.BulkFormat;
+import com.openclassrooms.starterjwt.services.BulkTable;
+import com.openclassrooms.starterjwt.services.BulkTransferService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.InputStream;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkControllerUnitTest {
+
+    private MockMvc mockMvc;
+
+    @Mock
+    private BulkTransferService bulkTransferService;
+
+    @InjectMocks
+    private BulkController bulkController;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(bulkController).build();
+    }
+
+    @Test
+    @Tag("get_api/bulk/{table}")
+    @DisplayName("should stream the table as a CSV attachment")
+    void export_returnsAnAttachmentOfTheFormat() throws Exception {
+        mockMvc.perform(get("/api/bulk/teachers").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andExpect(header().string("Content-Type", "text/csv"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"teachers.csv\""));
+    }
+
+    @Test
+    @Tag("get_api/bulk/{table}")
+    @DisplayName("should reject an unknown table or format")
+    void export_unknownTableOrFormat_returnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/bulk/waitlist")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/bulk/sessions").param("format", "xml")).andExpect(status().isBadRequest());
+        verifyNoInteractions(bulkTransferService);
+    }
+
+    @Test
+    @Tag("post_api/bulk/{table}")
+    @DisplayName("should import the body and return the checkpoint")
+    void importRows_returnsTheResult() throws Exception {
+        when(bulkTransferService.importRows(eq(BulkTable.SESSIONS), eq(BulkFormat.NDJSON), any(InputStream.class),
+                eq("studio-1"), eq(500)))
+                .thenReturn(new BulkImportResult("studio-1", BulkTable.SESSIONS, 2, 2, null));
+
+        mockMvc.perform(post("/api/bulk/sessions").param("importId", "studio-1").param("batchSize", "500")
+                        .content("{\"id\":1}\n{\"id\":2}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.importId", is("studio-1")))
+                .andExpect(jsonPath("$.committed", is(2)));
+    }
+
+    @Test
+    @Tag("post_api/bulk/{table}")
+    @DisplayName("should answer 400 with the rows committed before an invalid row")
+    void importRows_stoppedEarly_returnsBadRequestWithTheCheckpoint() throws Exception {
+        when(bulkTransferService.importRows(eq(BulkTable.USERS), eq(BulkFormat.CSV), any(InputStream.class),
+                isNull(), isNull()))
+                .thenReturn(new BulkImportResult("generated", BulkTable.USERS, 1000, 1000, "Missing id in USERS"));
+
+        mockMvc.perform(post("/api/bulk/users").param("format", "csv").content("id,email\n"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.committed", is(1000)))
+                .andExpect(jsonPath("$.error", is("Missing id in USERS")));
+    }
+
+    @Test
+    @Tag("post_api/bulk/{table}")
+    @DisplayName("should reject a batch size that is not a number")
+    void importRows_invalidBatchSize_returnsBadRequest() throws Exception {
+        mockMvc.perform(post("/api/bulk/users").param("batchSize", "many").content(""))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(bulkTransferService);
+    }
+}
@@ -1,6 +1,15 @@
 package com.openclassrooms.starterjwt.unit.controller;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import java.io.ByteArrayOutputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
@@ -13,19 +22,34 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.payload.request.BulkParticipationRequest;
+import com.openclassrooms.starterjwt.payload.request.GroupParticipationRequest;
+import com.openclassrooms.starterjwt.payload.response.PageResponse;
+import com.openclassrooms.starterjwt.payload.response.SessionChangesResponse;
+import com.openclassrooms.starterjwt.payload.response.WaitlistResponse;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.services.BookingOutcome;
+import com.openclassrooms.starterjwt.services.SessionExporter;
 import com.openclassrooms.starterjwt.services.SessionService;
 
 @SpringBootTest
@@ -48,10 +72,13 @@ public class SessionControllerUnitTest {
     @Mock
     private SessionMapper sessionMapper;
 
+    @Mock
+    private SessionExporter sessionExporter;
+
     @BeforeEach
     void setUp() {
         // Initialize the controller with mock dependencies
-        sessionController = new SessionController(sessionService, sessionMapper);
+        sessionController = new SessionController(sessionService, sessionMapper, sessionExporter);
     }
 
     @Test
@@ -65,10 +92,11 @@ public class SessionControllerUnitTest {
         when(sessionService.getById(sessionId)).thenReturn(mockSession);
 
         // * Act
-        ResponseEntity<?> result = sessionController.findById(sessionId.toString());
+        ResponseEntity<?> result = sessionController.findById(sessionId.toString(), new ServletWebRequest(new MockHttpServletRequest()));
 
         // * Assert
         assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertNull(result.getHeaders().getETag());
     }
 
     @Test
@@ -81,24 +109,141 @@ public class SessionControllerUnitTest {
         when(sessionService.getById(sessionId)).thenReturn(null);
 
         // * Act
-        ResponseEntity<?> result = sessionController.findById(sessionId.toString());
+        ResponseEntity<?> result = sessionController.findById(sessionId.toString(), new ServletWebRequest(new MockHttpServletRequest()));
 
         // * Assert
         assertEquals(HttpStatus.NOT_FOUND, result.getStatusCode());
     }
 
+    @Test
+    @Tag("get_api/session/{id}")
+    @DisplayName("return a 304 without loading the session when the ETag matches")
+    public void getSessionById_withMatchingETag_returnsNotModified() {
+        // * Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/session/1");
+        request.addHeader("If-None-Match", "\"session-1\"");
+        when(sessionService.getETag(1L)).thenReturn("\"session-1\"");
+
+        // * Act
+        ResponseEntity<?> result = sessionController.findById("1", new ServletWebRequest(request));
+
+        // * Assert
+        assertEquals(HttpStatus.NOT_MODIFIED, result.getStatusCode());
+        assertEquals("\"session-1\"", result.getHeaders().getETag());
+        verify(sessionService, never()).getById(any());
+    }
+
+    @Test
+    @Tag("get_api/session")
+    @DisplayName("return a 304 without listing the sessions when the list ETag matches")
+    public void getAllSessions_withMatchingETag_returnsNotModified() {
+        // * Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/session");
+        request.addHeader("If-None-Match", "\"sessions-3\"");
+        when(sessionService.getListETag()).thenReturn("\"sessions-3\"");
+
+        // * Act
+        ResponseEntity<?> result = sessionController.findAll(new ServletWebRequest(request));
+
+        // * Assert
+        assertEquals(HttpStatus.NOT_MODIFIED, result.getStatusCode());
+        verify(sessionService, never()).findAllSummaries();
+    }
+
     @Test
     @Tag("get_api/session")
     @DisplayName("retrieve all the sessions from the database as an empty or full array")
     public void getAllSessions_returnsListOfAllSessions() {
         // * Arrange
+        when(sessionService.getListETag()).thenReturn("\"sessions-1\"");
+
         // * Act
-        ResponseEntity<?> result = sessionController.findAll();
+        ResponseEntity<?> result = sessionController.findAll(new ServletWebRequest(new MockHttpServletRequest()));
 
         // * Assert
         assertEquals(HttpStatus.OK, result.getStatusCode());
     }
 
+    @Test
+    @Tag("get_api/session?page")
+    @DisplayName("retrieve one page of sessions with the total count")
+    public void getSessionPage_returnsPageWithTotal() {
+        // * Arrange
+        List<Session> sessions = List.of(new Session(), new Session());
+        when(sessionService.findPage(1, 2)).thenReturn(new PageImpl<>(sessions, PageRequest.of(1, 2), 5));
+
+        // * Act
+        ResponseEntity<?> result = sessionController.findPage("1", "2");
+
+        // * Assert
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        PageResponse<?> body = (PageResponse<?>) result.getBody();
+        assertNotNull(body);
+        assertEquals(1, body.getPage());
+        assertEquals(5L, body.getTotalElements());
+    }
+
+    @Test
+    @Tag("get_api/session?page")
+    @DisplayName("should return a 400 status code for an out of range page size")
+    public void getSessionPage_withTooLargeSize_returnsBadRequest() {
+        // * Arrange
+        // * Act
+        ResponseEntity<?> result = sessionController.findPage("0", "1000");
+
+        // * Assert
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+    }
+
+    @Test
+    @Tag("get_api/session?cursor")
+    @DisplayName("retrieve the first keyset page and a cursor pointing after its last session")
+    public void getSessionsAfterCursor_withFullPage_returnsNextCursor() {
+        // * Arrange
+        Session first = new Session().setId(3L).setDate(new Date(1000L));
+        Session last = new Session().setId(7L).setDate(new Date(2000L));
+        when(sessionService.findAfter(null, null, 2)).thenReturn(List.of(first, last));
+
+        // * Act
+        ResponseEntity<?> result = sessionController.findAfter("", "2");
+        PageResponse<?> body = (PageResponse<?>) result.getBody();
+        assertNotNull(body);
+        sessionController.findAfter(body.getNextCursor(), "2");
+
+        // * Assert
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        verify(sessionService).findAfter(eq(new Date(2000L)), eq(7L), eq(2));
+    }
+
+    @Test
+    @Tag("get_api/session?cursor")
+    @DisplayName("should not return a cursor on the last keyset page")
+    public void getSessionsAfterCursor_withPartialPage_returnsNoCursor() {
+        // * Arrange
+        when(sessionService.findAfter(any(), any(), eq(20))).thenReturn(List.of(new Session().setId(1L)));
+
+        // * Act
+        ResponseEntity<?> result = sessionController.findAfter("", "20");
+
+        // * Assert
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        PageResponse<?> body = (PageResponse<?>) result.getBody();
+        assertNotNull(body);
+        assertNull(body.getNextCursor());
+    }
+
+    @Test
+    @Tag("get_api/session?cursor")
+    @DisplayName("should return a 400 status code for a malformed cursor")
+    public void getSessionsAfterCursor_withInvalidCursor_returnsBadRequest() {
+        // * Arrange
+        // * Act
+        ResponseEntity<?> result = sessionController.findAfter("not-a-cursor!", "20");
+
+        // * Assert
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+    }
+
     @Test
     @Tag("post_api/session")
     @DisplayName("create the session and return a 201 status code")
@@ -253,6 +398,7 @@ public class SessionControllerUnitTest {
         SessionDto sessionDto = new SessionDto();
         sessionDto.setId(1L);
         sessionDto.setTeacher_id(1L);
+        when(sessionService.participate(1L, 1L)).thenReturn(BookingOutcome.BOOKED);
 
         // * Act
         ResponseEntity<?> result = sessionController.participate(sessionDto.getId().toString(),
@@ -261,4 +407,223 @@ public class SessionControllerUnitTest {
         // * Assert
         assertEquals(HttpStatus.OK, result.getStatusCode());
     }
+
+    @Test
+    @Tag("post_api/session/{id}/participate/{userId}")
+    @DisplayName("should put the user on the waitlist of a full session and return a 202 status code")
+    public void addUserToFullSession_shouldReturnWaitlistPosition() {
+        // * Arrange
+        when(sessionService.participate(1L, 2L)).thenReturn(BookingOutcome.waitlisted(3));
+
+        // * Act
+        ResponseEntity<?> result = sessionController.participate("1", "2");
+
+        // * Assert
+        assertEquals(HttpStatus.ACCEPTED, result.getStatusCode());
+        assertEquals(3, ((WaitlistResponse) result.getBody()).getPosition());
+    }
+
+    @Test
+    @Tag("get_api/session/{id}/waitlist/{userId}")
+    @DisplayName("should return the waitlist position of a waiting user")
+    public void getWaitlistPosition_withWaitingUser_returnsPosition() {
+        // * Arrange
+        when(sessionService.getWaitlistPosition(1L, 2L)).thenReturn(4);
+
+        // * Act
+        ResponseEntity<?> result = sessionController.waitlistPosition("1", "2");
+
+        // * Assert
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertEquals(4, ((WaitlistResponse) result.getBody()).getPosition());
+    }
+
+    @Test
+    @Tag("get_api/session/{id}/waitlist/{userId}")
+    @DisplayName("should return a 404 status code for a user who is not waiting")
+    public void getWaitlistPosition_withUserNotWaiting_returnsNotFound() {
+        // * Arrange
+        when(sessionService.getWaitlistPosition(1L, 2L)).thenReturn(null);
+
+        // * Act
+        ResponseEntity<?> result = sessionController.waitlistPosition("1", "2");
+
+        // * Assert
+        assertEquals(HttpStatus.NOT_FOUND, result.getStatusCode());
+    }
+
+    @Test
+    @Tag("post_api/session/{id}/participate")
+    @DisplayName("should book every user of the group on the session")
+    public void addGroupToSession_shouldBookEveryUser() {
+        // * Arrange
+        GroupParticipationRequest request = new GroupParticipationRequest();
+        request.setUserIds(List.of(2L, 3L));
+
+        // * Act
+        ResponseEntity<?> result = sessionController.participateGroup("1", request);
+
+        // * Assert
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        verify(sessionService).participateAll(List.of(
+                new BulkParticipationRequest.Participation(1L, 2L),
+                new BulkParticipationRequest.Participation(1L, 3L)));
+    }
+
+    @Test
+    @Tag("post_api/session/{id}/participate")
+    @DisplayName("should return a 400 status code for an invalid session id")
+    public void addGroupToSession_withInvalidId_returnsBadRequest() {
+        // * Arrange
+        GroupParticipationRequest request = new GroupParticipationRequest();
+        request.setUserIds(List.of(2L));
+
+        // * Act
+        ResponseEntity<?> result = sessionController.participateGroup("invalid", request);
+
+        // * Assert
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+    }
+
+    @Test
+    @Tag("get_api/session/search")
+    @DisplayName("search the next 7 days by default")
+    public void searchSessions_withoutWindow_searchesTheNextSevenDays() {
+        // * Arrange
+        long before = System.currentTimeMillis();
+        when(sessionService.search(any(), any(), eq(2L), eq(true), any(), eq(1), eq(10)))
+                .thenReturn(new PageImpl<>(List.of(), PageRequest.of(1, 10), 10));
+
+        // * Act
+        ResponseEntity<?> result = sessionController.search(null, null, "2", true, "date", "desc", "1", "10");
+
+        // * Assert
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        ArgumentCaptor<Date> from = ArgumentCaptor.forClass(Date.class);
+        ArgumentCaptor<Date> to = ArgumentCaptor.forClass(Date.class);
+        verify(sessionService).search(from.capture(), to.capture(), eq(2L), eq(true),
+                eq(Sort.by(Sort.Direction.DESC, "date")), eq(1), eq(10));
+        assertEquals(7L * 24 * 60 * 60 * 1000, to.getValue().getTime() - from.getValue().getTime());
+        assertTrue(from.getValue().getTime() >= before);
+    }
+
+    @Test
+    @Tag("get_api/session/search")
+    @DisplayName("should return a 400 status code for an unknown sort field")
+    public void searchSessions_withUnknownSort_returnsBadRequest() {
+        // * Arrange
+        // * Act
+        ResponseEntity<?> result = sessionController.search(null, null, null, false, "password", "asc", "0", "20");
+
+        // * Assert
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+    }
+
+    @Test
+    @Tag("get_api/session/search")
+    @DisplayName("should return a 400 status code for an invalid teacher id")
+    public void searchSessions_withInvalidTeacher_returnsBadRequest() {
+        // * Arrange
+        // * Act
+        ResponseEntity<?> result = sessionController.search(null, null, "abc", false, "date", "asc", "0", "20");
+
+        // * Assert
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+    }
+
+    @Test
+    @Tag("get_api/session/search?q")
+    @DisplayName("should return a ranked page of sessions for a full-text query")
+    public void searchSessionsByText_returnsPage() {
+        // * Arrange
+        List<Session> sessions = List.of(new Session(), new Session());
+        when(sessionService.searchText("yoga", 1, 2)).thenReturn(new PageImpl<>(sessions, PageRequest.of(1, 2), 7));
+        when(sessionMapper.toDto(sessions)).thenReturn(List.of(new SessionDto(), new SessionDto()));
+
+        // * Act
+        ResponseEntity<?> result = sessionController.searchText("yoga", "1", "2");
+
+        // * Assert
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        PageResponse<?> body = (PageResponse<?>) result.getBody();
+        assertEquals(2, body.getContent().size());
+        assertEquals(1, body.getPage());
+        assertEquals(7L, body.getTotalElements());
+    }
+
+    @Test
+    @Tag("get_api/session/search?q")
+    @DisplayName("should return a 400 status code for a page beyond the result window")
+    public void searchSessionsByText_beyondResultWindow_returnsBadRequest() {
+        // * Arrange
+        when(sessionService.searchText("yoga", 500, 100)).thenThrow(new IllegalArgumentException());
+
+        // * Act
+        ResponseEntity<?> result = sessionController.searchText("yoga", "500", "100");
+
+        // * Assert
+        assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
+    }
+
+    @Test
+    @Tag("get_api/session/changes")
+    @DisplayName("should return the sessions updated and deleted since the last sync")
+    public void findChanges_returnsUpdatedAndDeletedSessions() {
+        // * Arrange
+        Date since = new Date(System.currentTimeMillis() - 60_000);
+        List<Session> updated = List.of(new Session());
+        when(sessionService.isInChangeLog(since)).thenReturn(true);
+        when(sessionService.findUpdatedSince(since)).thenReturn(updated);
+        when(sessionService.findDeletedSince(since)).thenReturn(List.of(4L));
+        when(sessionMapper.toDto(updated)).thenReturn(List.of(new SessionDto()));
+
+        // * Act
+        ResponseEntity<?> result = sessionController.findChanges(since);
+
+        // * Assert
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        SessionChangesResponse body = (SessionChangesResponse) result.getBody();
+        assertEquals(1, body.getUpdated().size());
+        assertEquals(List.of(4L), body.getDeleted());
+        assertFalse(body.isFullSync());
+        assertTrue(body.getNext().getTime() < System.currentTimeMillis());
+    }
+
+    @Test
+    @Tag("get_api/session/changes")
+    @DisplayName("should return the whole catalogue when the deletion log does not reach the last sync")
+    public void findChanges_beforeTheChangeLog_returnsFullSync() {
+        // * Arrange
+        Date since = new Date(0L);
+        when(sessionService.isInChangeLog(since)).thenReturn(false);
+        when(sessionService.findAllSummaries()).thenReturn(List.of(new SessionDto(), new SessionDto()));
+
+        // * Act
+        ResponseEntity<?> result = sessionController.findChanges(since);
+
+        // * Assert
+        SessionChangesResponse body = (SessionChangesResponse) result.getBody();
+        assertTrue(body.isFullSync());
+        assertEquals(2, body.getUpdated().size());
+        verify(sessionService, never()).findDeletedSince(any());
+        verify(sessionService, never()).findAll();
+    }
+
+    @Test
+    @Tag("get_api/session/export")
+    @DisplayName("should stream the catalogue through the exporter")
+    public void export_writesTheExporterOutput() throws Exception {
+        // * Arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        when(sessionExporter.export(out)).thenReturn(0);
+
+        // * Act
+        ResponseEntity<StreamingResponseBody> result = sessionController.export();
+        result.getBody().writeTo(out);
+
+        // * Assert
+        assertEquals(HttpStatus.OK, result.getStatusCode());
+        assertEquals(MediaType.APPLICATION_JSON, result.getHeaders().getContentType());
+        verify(sessionExporter).export(out);
+    }
 }
@@ -18,6 +18,8 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -64,6 +66,7 @@ class TeacherControllerUnitTest {
     void findById_ShouldReturnTeacher_WhenTeacherExists() throws Exception {
         // Given
         when(teacherService.findById(1L)).thenReturn(teacher);
+        when(teacherService.getETag(teacher)).thenReturn("\"teacher-1\"");
         when(teacherMapper.toDto(teacher)).thenReturn(teacherDto);
 
         // When & Then
@@ -94,6 +97,7 @@ class TeacherControllerUnitTest {
     @Test
     void findAll_ShouldReturnAllTeachers() throws Exception {
         // Given
+        when(teacherService.getListETag()).thenReturn("\"teachers-1\"");
         when(teacherService.findAll()).thenReturn(teachers);
         when(teacherMapper.toDto(teachers)).thenReturn(teacherDtos);
 
@@ -108,6 +112,7 @@ class TeacherControllerUnitTest {
     @Test
     void findAll_ShouldReturnEmptyList_WhenNoTeachers() throws Exception {
         // Given
+        when(teacherService.getListETag()).thenReturn("\"teachers-1\"");
         when(teacherService.findAll()).thenReturn(Arrays.asList());
         when(teacherMapper.toDto(any(List.class))).thenReturn(Arrays.asList());
 
@@ -117,4 +122,42 @@ class TeacherControllerUnitTest {
                 .andExpect(jsonPath("$").isArray())
                 .andExpect(jsonPath("$").isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    void findById_ShouldReturnNotModified_WhenETagMatches() throws Exception {
+        // Given
+        when(teacherService.findById(1L)).thenReturn(teacher);
+        when(teacherService.getETag(teacher)).thenReturn("\"teacher-1\"");
+
+        // When & Then
+        mockMvc.perform(get("/api/teacher/1").header("If-None-Match", "\"teacher-1\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"teacher-1\""))
+                .andExpect(content().string(""));
+        verify(teacherMapper, never()).toDto(any(Teacher.class));
+    }
+
+    @Test
+    void findAll_ShouldReturnNotModified_WhenListETagMatches() throws Exception {
+        // Given
+        when(teacherService.getListETag()).thenReturn("\"teachers-2\"");
+
+        // When & Then
+        mockMvc.perform(get("/api/teacher").header("If-None-Match", "\"teachers-2\""))
+                .andExpect(status().isNotModified());
+        verify(teacherService, never()).findAll();
+    }
+
+    @Test
+    void findAll_ShouldSendTheListETag() throws Exception {
+        // Given
+        when(teacherService.getListETag()).thenReturn("\"teachers-2\"");
+        when(teacherService.findAll()).thenReturn(teachers);
+        when(teacherMapper.toDto(teachers)).thenReturn(teacherDtos);
+
+        // When & Then
+        mockMvc.perform(get("/api/teacher").header("If-None-Match", "\"teachers-1\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"teachers-2\""));
+    }
+}
@@ -1,9 +1,15 @@
 package com.openclassrooms.starterjwt.unit.controller;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Date;
+import java.util.List;
+
 import com.openclassrooms.starterjwt.controllers.UserController;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -22,10 +28,12 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
 import com.openclassrooms.starterjwt.dto.UserDto;
 import com.openclassrooms.starterjwt.mapper.UserMapper;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.services.SessionService;
 import com.openclassrooms.starterjwt.services.UserService;
 
 @SpringBootTest
@@ -46,9 +54,12 @@ public class UserControllerUnitTest {
     @MockBean
     private UserMapper userMapper;
 
+    @MockBean
+    private SessionService sessionService;
+
     @BeforeEach
     void setUp() {
-        userController = new UserController(userService, userMapper);
+        userController = new UserController(userService, userMapper, sessionService);
     }
 
     @Test
@@ -159,4 +170,38 @@ public class UserControllerUnitTest {
         // * Assert
         assertEquals(HttpStatus.BAD_REQUEST, result.getStatusCode());
     }
+
+    @Test
+    @Tag("get_api/user/{id}/sessions")
+    @DisplayName("list the sessions the user participates in within the date range")
+    public void getUserSessions_shouldReturnTheUserSessions() {
+        // * Arrange
+        Date from = new Date(0L);
+        Date to = new Date(1_000L);
+        List<SessionSummaryDto> sessions = List.of(new SessionSummaryDto(1L, "Yoga", new Date(500L), 2L));
+        when(userService.exists(1L)).thenReturn(true);
+        when(sessionService.findByParticipant(1L, from, to)).thenReturn(sessions);
+
+        // * Act
+        ResponseEntity<?> response = userController.findSessions("1", from, to);
+
+        // * Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(sessions, response.getBody());
+    }
+
+    @Test
+    @Tag("get_api/user/{id}/sessions")
+    @DisplayName("return a 404 error for an unknown user")
+    public void getUserSessions_withUnknownUser_returnsNotFound() {
+        // * Arrange
+        when(userService.exists(1L)).thenReturn(false);
+
+        // * Act
+        ResponseEntity<?> response = userController.findSessions("1", null, null);
+
+        // * Assert
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        verify(sessionService, never()).findByParticipant(anyLong(), any(), any());
+    }
 }
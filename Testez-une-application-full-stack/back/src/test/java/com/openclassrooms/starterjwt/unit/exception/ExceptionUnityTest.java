@@ -3,10 +3,14 @@ package com.openclassrooms.starterjwt.unit.exception;
 
 import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.exception.UnknownReferenceException;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.ResponseStatus;
 
+import java.util.List;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 class ExceptionUnityTest {
@@ -34,4 +38,28 @@ class ExceptionUnityTest {
         assertThat(annotation.value()).isEqualTo(HttpStatus.NOT_FOUND);
         assertThat(exception).isInstanceOf(RuntimeException.class);
     }
+
+    @Test
+    void serviceUnavailableException_ShouldHaveCorrectAnnotation() {
+        // Given & When
+        ServiceUnavailableException exception = new ServiceUnavailableException();
+        ResponseStatus annotation = exception.getClass().getAnnotation(ResponseStatus.class);
+
+        // Then
+        assertThat(annotation).isNotNull();
+        assertThat(annotation.value()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(exception).isInstanceOf(RuntimeException.class);
+    }
+
+    @Test
+    void unknownReferenceException_ShouldHaveCorrectAnnotation() {
+        // Given & When
+        UnknownReferenceException exception = new UnknownReferenceException(List.of(1L), List.of(2L, 3L));
+        ResponseStatus annotation = exception.getClass().getAnnotation(ResponseStatus.class);
+
+        // Then
+        assertThat(annotation).isNotNull();
+        assertThat(annotation.value()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(exception.getMessage()).contains("[1]", "[2, 3]");
+    }
 }
@@ -1,6 +1,7 @@
 package com.openclassrooms.starterjwt.unit.mapper;
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.exception.UnknownReferenceException;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.Teacher;
@@ -18,8 +19,10 @@ import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -59,7 +62,7 @@ class SessionMapperUnityTest {
         teacher.setId(1L);
         teacher.setFirstName("John");
         teacher.setLastName("Doe");
-        when(teacherService.findById(1L)).thenReturn(teacher);
+        when(teacherService.findAllById(Set.of(1L))).thenReturn(List.of(teacher));
 
         // Mock users
         User user1 = new User();
@@ -78,8 +81,7 @@ class SessionMapperUnityTest {
         user2.setPassword("password");
         user2.setAdmin(false);
 
-        when(userService.findById(1L)).thenReturn(user1);
-        when(userService.findById(2L)).thenReturn(user2);
+        when(userService.findAllById(Set.of(1L, 2L))).thenReturn(List.of(user1, user2));
 
         // When
         Session session = sessionMapper.toEntity(sessionDto);
@@ -92,6 +94,57 @@ class SessionMapperUnityTest {
         assertEquals(sessionDto.getDate(), session.getDate());
         assertEquals(sessionDto.getCreatedAt(), session.getCreatedAt());
         assertEquals(sessionDto.getUpdatedAt(), session.getUpdatedAt());
+        assertEquals(teacher, session.getTeacher());
+        assertEquals(List.of(user1, user2), session.getUsers());
+    }
+
+    @Test
+    void testToEntityListResolvesReferencesOnce() {
+        // Given
+        Teacher teacher = new Teacher().setId(1L);
+        User user1 = new User().setId(1L);
+        User user2 = new User().setId(2L);
+        User user3 = new User().setId(3L);
+
+        SessionDto sessionDto1 = new SessionDto();
+        sessionDto1.setTeacher_id(1L);
+        sessionDto1.setUsers(Arrays.asList(1L, 2L));
+        SessionDto sessionDto2 = new SessionDto();
+        sessionDto2.setTeacher_id(1L);
+        sessionDto2.setUsers(Arrays.asList(2L, 3L));
+
+        when(teacherService.findAllById(Set.of(1L))).thenReturn(List.of(teacher));
+        when(userService.findAllById(Set.of(1L, 2L, 3L))).thenReturn(List.of(user1, user2, user3));
+
+        // When
+        List<Session> sessions = sessionMapper.toEntity(Arrays.asList(sessionDto1, sessionDto2));
+
+        // Then
+        verify(teacherService, times(1)).findAllById(any());
+        verify(userService, times(1)).findAllById(any());
+        verify(userService, never()).findById(any());
+        assertEquals(List.of(user1, user2), sessions.get(0).getUsers());
+        assertEquals(List.of(user2, user3), sessions.get(1).getUsers());
+        assertEquals(teacher, sessions.get(1).getTeacher());
+    }
+
+    @Test
+    void testToEntityWithUnknownIds() {
+        // Given
+        SessionDto sessionDto = new SessionDto();
+        sessionDto.setTeacher_id(9L);
+        sessionDto.setUsers(Arrays.asList(1L, 7L, 8L));
+
+        when(teacherService.findAllById(Set.of(9L))).thenReturn(List.of());
+        when(userService.findAllById(Set.of(1L, 7L, 8L))).thenReturn(List.of(new User().setId(1L)));
+
+        // When
+        UnknownReferenceException exception = assertThrows(UnknownReferenceException.class,
+                () -> sessionMapper.toEntity(sessionDto));
+
+        // Then
+        assertEquals(Set.of(9L), Set.copyOf(exception.getTeacherIds()));
+        assertEquals(Set.of(7L, 8L), Set.copyOf(exception.getUserIds()));
     }
 
     @Test
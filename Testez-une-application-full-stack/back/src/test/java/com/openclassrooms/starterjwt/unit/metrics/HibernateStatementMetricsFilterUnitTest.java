@@ -0,0 +1,60 @@
+package com.openclassrooms.starterjwt.unit.metrics;
+
+import com.openclassrooms.starterjwt.metrics.HibernateStatementMetricsFilter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HibernateStatementMetricsFilterUnitTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private HibernateStatementMetricsFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new HibernateStatementMetricsFilter(meterRegistry);
+    }
+
+    @Test
+    @Tag("HibernateStatementMetricsFilter.doFilter()")
+    @DisplayName("Recording the statements prepared during a request under its route")
+    void doFilter_recordsTheStatementsOfTheRequest() throws Exception {
+        // * Arrange
+        // Left over from work done outside a request on this thread
+        filter.inspect("select 1");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/session/1");
+
+        // * Act
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> {
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/api/session/{id}");
+            filter.inspect("select s from SESSIONS s");
+            filter.inspect("select p from PARTICIPATE p");
+        });
+
+        // * Assert
+        DistributionSummary statements = meterRegistry.get("yoga.hibernate.statements")
+                .tag("method", "GET")
+                .tag("uri", "/api/session/{id}")
+                .summary();
+        assertEquals(1, statements.count());
+        assertEquals(2, statements.totalAmount());
+    }
+
+    @Test
+    @Tag("HibernateStatementMetricsFilter.inspect()")
+    @DisplayName("Leaving the SQL untouched")
+    void inspect_returnsTheSql() {
+        // * Act & Assert
+        assertEquals("select 1", filter.inspect("select 1"));
+    }
+}
@@ -0,0 +1,22 @@
+package com.openclassrooms.starterjwt.unit.security.crypto;
+
+import com.openclassrooms.starterjwt.security.crypto.BCryptStrengthCalibrator;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BCryptStrengthCalibratorUnitTest {
+
+    @Test
+    void calibrate_WithTinyTarget_ShouldKeepMinimumStrength() {
+        assertEquals(10, BCryptStrengthCalibrator.calibrate(1, 10));
+    }
+
+    @Test
+    void calibrate_WithLargerTarget_ShouldRaiseStrength() {
+        // Cost 4 hashes in well under a millisecond, so a 50 ms budget always allows a higher cost
+        int strength = BCryptStrengthCalibrator.calibrate(50, 4);
+
+        assertTrue(strength > 4);
+    }
+}
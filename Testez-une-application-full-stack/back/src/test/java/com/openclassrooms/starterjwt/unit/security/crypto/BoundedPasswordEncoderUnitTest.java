@@ -0,0 +1,102 @@
+package com.openclassrooms.starterjwt.unit.security.crypto;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.security.crypto.BoundedPasswordEncoder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderUnitTest {
+
+    private BoundedPasswordEncoder boundedPasswordEncoder;
+
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        boundedPasswordEncoder.destroy();
+    }
+
+    @Test
+    void encodeAndMatches_ShouldDelegate() {
+        boundedPasswordEncoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(4), 2, 4);
+
+        String encoded = boundedPasswordEncoder.encode("password");
+
+        assertTrue(boundedPasswordEncoder.matches("password", encoded));
+        assertFalse(boundedPasswordEncoder.matches("wrong", encoded));
+    }
+
+    @Test
+    void upgradeEncoding_WithLowerCost_ShouldReturnTrue() {
+        boundedPasswordEncoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(5), 1, 1);
+
+        assertTrue(boundedPasswordEncoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("password")));
+        assertFalse(boundedPasswordEncoder.upgradeEncoding(new BCryptPasswordEncoder(5).encode("password")));
+    }
+
+    @Test
+    void encode_WhenQueueIsFull_ShouldRejectWithServiceUnavailable() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        boundedPasswordEncoder = new BoundedPasswordEncoder(blockingEncoder(started, release), 1, 1);
+
+        callers.submit(() -> boundedPasswordEncoder.encode("running"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        callers.submit(() -> boundedPasswordEncoder.encode("queued"));
+        while (boundedPasswordEncoder.getQueueDepth() < 1) {
+            Thread.sleep(1);
+        }
+
+        assertThrows(ServiceUnavailableException.class, () -> boundedPasswordEncoder.encode("rejected"));
+        assertEquals(1, boundedPasswordEncoder.getActiveCount());
+        assertEquals(1, boundedPasswordEncoder.getRejectedCount());
+        release.countDown();
+    }
+
+    @Test
+    void encode_WhenHashingIsSlow_ShouldWaitForTheHash() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        boundedPasswordEncoder = new BoundedPasswordEncoder(blockingEncoder(started, release), 1, 1);
+
+        Future<String> slow = callers.submit(() -> boundedPasswordEncoder.encode("slow"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertFalse(slow.isDone());
+        release.countDown();
+
+        assertEquals("slow", slow.get(5, TimeUnit.SECONDS));
+        assertEquals(0, boundedPasswordEncoder.getRejectedCount());
+    }
+
+    private PasswordEncoder blockingEncoder(CountDownLatch started, CountDownLatch release) {
+        return new PasswordEncoder() {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return rawPassword.toString();
+            }
+
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                return rawPassword.toString().equals(encodedPassword);
+            }
+        };
+    }
+}
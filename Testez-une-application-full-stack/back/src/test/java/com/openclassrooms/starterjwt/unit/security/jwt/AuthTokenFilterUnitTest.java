@@ -3,6 +3,8 @@ package com.openclassrooms.starterjwt.unit.security.jwt;
 
 import com.openclassrooms.starterjwt.security.jwt.AuthTokenFilter;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationRegistry;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,6 +18,9 @@ import org.springframework.mock.web.MockHttpServletRequest;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.core.context.SecurityContextHolder;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -34,6 +39,12 @@ class AuthTokenFilterUnitTest {
     @Mock
     private UserDetailsServiceImpl userDetailsService;
 
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    @Mock
+    private TokenRevocationRegistry tokenRevocationRegistry;
+
     @Mock
     private FilterChain filterChain;
 
@@ -60,8 +71,7 @@ class AuthTokenFilterUnitTest {
         String token = "valid.jwt.token";
         request.addHeader("Authorization", "Bearer " + token);
 
-        when(jwtUtils.validateJwtToken(token)).thenReturn(true);
-        when(jwtUtils.getUserNameFromJwtToken(token)).thenReturn("test@test.com");
+        when(jwtUtils.getClaimsFromJwtToken(token)).thenReturn(Jwts.claims().setSubject("test@test.com"));
         when(userDetailsService.loadUserByUsername("test@test.com")).thenReturn(userDetails);
 
         // When
@@ -69,17 +79,108 @@ class AuthTokenFilterUnitTest {
 
         // Then
         verify(filterChain).doFilter(request, response);
+        verify(userDetailsCache).putUserInCache(userDetails);
         assertNotNull(SecurityContextHolder.getContext().getAuthentication());
         assertEquals("test@test.com", SecurityContextHolder.getContext().getAuthentication().getName());
     }
 
+    @Test
+    void doFilterInternal_WithCachedPrincipal_ShouldNotLoadUser() throws ServletException, IOException {
+        // Given
+        String token = "valid.jwt.token";
+        request.addHeader("Authorization", "Bearer " + token);
+
+        when(jwtUtils.getClaimsFromJwtToken(token)).thenReturn(Jwts.claims().setSubject("test@test.com"));
+        when(userDetailsCache.getUserFromCache("test@test.com")).thenReturn(userDetails);
+
+        // When
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        // Then
+        verify(filterChain).doFilter(request, response);
+        verify(userDetailsService, never()).loadUserByUsername(any());
+        assertEquals("test@test.com", SecurityContextHolder.getContext().getAuthentication().getName());
+    }
+
+    @Test
+    void doFilterInternal_WithSelfContainedToken_ShouldNotLoadUser() throws ServletException, IOException {
+        // Given
+        String token = "valid.jwt.token";
+        request.addHeader("Authorization", "Bearer " + token);
+        Claims claims = Jwts.claims().setSubject("test@test.com");
+        UserDetailsImpl claimsUserDetails = UserDetailsImpl.builder()
+                .id(1L)
+                .username("test@test.com")
+                .build();
+
+        when(jwtUtils.getClaimsFromJwtToken(token)).thenReturn(claims);
+        when(jwtUtils.isSelfContained()).thenReturn(true);
+        when(jwtUtils.getUserDetailsFromClaims(claims)).thenReturn(claimsUserDetails);
+
+        // When
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        // Then
+        verify(filterChain).doFilter(request, response);
+        verify(userDetailsCache, never()).getUserFromCache(any());
+        verify(userDetailsService, never()).loadUserByUsername(any());
+        assertEquals(claimsUserDetails, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+    }
+
+    @Test
+    void doFilterInternal_WithSelfContainedTokenOnAnAdminPath_ShouldLoadTheStoredUser() throws ServletException, IOException {
+        // Given
+        String token = "valid.jwt.token";
+        request.addHeader("Authorization", "Bearer " + token);
+        request.setServletPath("/api/bulk/users");
+        UserDetailsImpl storedUserDetails = UserDetailsImpl.builder()
+                .id(1L)
+                .username("test@test.com")
+                .admin(false)
+                .build();
+
+        when(jwtUtils.getClaimsFromJwtToken(token)).thenReturn(Jwts.claims().setSubject("test@test.com"));
+        when(jwtUtils.isSelfContained()).thenReturn(true);
+        when(userDetailsCache.getUserFromCache("test@test.com")).thenReturn(storedUserDetails);
+
+        // When
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        // Then
+        verify(jwtUtils, never()).getUserDetailsFromClaims(any());
+        assertEquals(storedUserDetails, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+        assertTrue(SecurityContextHolder.getContext().getAuthentication().getAuthorities().isEmpty());
+    }
+
+    @Test
+    void doFilterInternal_WithRevokedUser_ShouldNotAuthenticate() throws ServletException, IOException {
+        // Given
+        String token = "valid.jwt.token";
+        request.addHeader("Authorization", "Bearer " + token);
+        UserDetailsImpl revokedUserDetails = UserDetailsImpl.builder()
+                .id(1L)
+                .username("test@test.com")
+                .build();
+
+        when(jwtUtils.getClaimsFromJwtToken(token)).thenReturn(Jwts.claims().setSubject("test@test.com"));
+        when(userDetailsCache.getUserFromCache("test@test.com")).thenReturn(revokedUserDetails);
+        when(tokenRevocationRegistry.isRevoked(1L, null)).thenReturn(true);
+
+        // When
+        authTokenFilter.doFilterInternal(request, response, filterChain);
+
+        // Then
+        verify(filterChain).doFilter(request, response);
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+
     @Test
     void doFilterInternal_WithInvalidToken_ShouldNotAuthenticate() throws ServletException, IOException {
         // Given
         String token = "invalid.jwt.token";
         request.addHeader("Authorization", "Bearer " + token);
 
-        when(jwtUtils.validateJwtToken(token)).thenReturn(false);
+        when(jwtUtils.getClaimsFromJwtToken(token)).thenReturn(null);
 
         // When
         authTokenFilter.doFilterInternal(request, response, filterChain);
@@ -118,8 +219,7 @@ class AuthTokenFilterUnitTest {
         String token = "valid.jwt.token";
         request.addHeader("Authorization", "Bearer " + token);
 
-        when(jwtUtils.validateJwtToken(token)).thenReturn(true);
-        when(jwtUtils.getUserNameFromJwtToken(token)).thenReturn("test@test.com");
+        when(jwtUtils.getClaimsFromJwtToken(token)).thenReturn(Jwts.claims().setSubject("test@test.com"));
         when(userDetailsService.loadUserByUsername("test@test.com")).thenThrow(new RuntimeException("Error"));
 
         // When
@@ -2,6 +2,7 @@ package com.openclassrooms.starterjwt.unit.security.jwt;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.doThrow;
@@ -24,6 +25,7 @@ import org.springframework.security.core.Authentication;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.SignatureAlgorithm;
@@ -45,6 +47,7 @@ public class JwtUtilsUnitTest {
         jwtUtils = new JwtUtils();
         ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "testSecret");
         ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 3_600_000); // 1 hour
+        jwtUtils.init();
     }
 
     @Test
@@ -107,12 +110,78 @@ public class JwtUtilsUnitTest {
         JwtUtils jwtUtils = new JwtUtils();
         ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "testSecret");
         ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 3_600_000);
+        jwtUtils.init();
 
         boolean isValid = jwtUtils.validateJwtToken(validToken);
 
         assertTrue(isValid);
     }
 
+    @Test
+    @DisplayName("Get claims from a generated JWT token")
+    void testGetClaimsFromJwtToken() {
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(1L)
+                .username("testUser")
+                .password("password")
+                .build();
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+
+        String token = jwtUtils.generateJwtToken(authentication);
+        Claims claims = jwtUtils.getClaimsFromJwtToken(token);
+
+        assertNotNull(claims);
+        assertEquals("testUser", claims.getSubject());
+        assertNotNull(claims.getExpiration());
+    }
+
+    @Test
+    @DisplayName("Self-contained JWT token carries the principal")
+    void testGetUserDetailsFromSelfContainedJwtToken() {
+        ReflectionTestUtils.setField(jwtUtils, "jwtSelfContained", true);
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(42L)
+                .firstName("Test")
+                .lastName("User")
+                .admin(true)
+                .username("testUser")
+                .password("password")
+                .build();
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+
+        String token = jwtUtils.generateJwtToken(authentication);
+        UserDetailsImpl result = jwtUtils.getUserDetailsFromClaims(jwtUtils.getClaimsFromJwtToken(token));
+
+        assertNotNull(result);
+        assertEquals(42L, result.getId());
+        assertEquals("testUser", result.getUsername());
+        assertEquals("Test", result.getFirstName());
+        assertEquals("User", result.getLastName());
+        assertTrue(result.getAdmin());
+        assertNull(result.getPassword());
+    }
+
+    @Test
+    @DisplayName("Default JWT token does not carry the principal")
+    void testGetUserDetailsFromDefaultJwtToken() {
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(42L)
+                .username("testUser")
+                .password("password")
+                .build();
+        when(authentication.getPrincipal()).thenReturn(userDetails);
+
+        String token = jwtUtils.generateJwtToken(authentication);
+
+        assertNull(jwtUtils.getUserDetailsFromClaims(jwtUtils.getClaimsFromJwtToken(token)));
+    }
+
+    @Test
+    @DisplayName("Get claims from an invalid JWT token")
+    void testGetClaimsFromInvalidJwtToken() {
+        assertNull(jwtUtils.getClaimsFromJwtToken("invalidToken"));
+    }
+
     @Test
     @DisplayName("Invalid JWT token with invalid signature")
     void testValidateJwtTokenInvalidSignature() {
@@ -121,6 +190,7 @@ public class JwtUtilsUnitTest {
         JwtUtils jwtUtils = new JwtUtils();
         ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "testSecret");
         ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 3_600_000);
+        jwtUtils.init();
 
         boolean isValid = jwtUtils.validateJwtToken(invalidToken);
 
@@ -142,6 +212,7 @@ public class JwtUtilsUnitTest {
         JwtUtils jwtUtils = new JwtUtils();
         ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "testSecret");
         ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 3_600_000);
+        jwtUtils.init();
 
         String invalidToken = "invalidToken";
         boolean isValid = jwtUtils.validateJwtToken(invalidToken);
@@ -155,6 +226,7 @@ public class JwtUtilsUnitTest {
         JwtUtils jwtUtils = new JwtUtils();
         ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "testSecret");
         ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 3_600_000);
+        jwtUtils.init();
 
         String expiredToken = Jwts.builder()
                 .setSubject("testUser")
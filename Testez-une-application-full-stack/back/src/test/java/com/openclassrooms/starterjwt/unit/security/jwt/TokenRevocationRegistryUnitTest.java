@@ -0,0 +1,148 @@
+package com.openclassrooms.starterjwt.unit.security.jwt;
+
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenRevocationRegistryUnitTest {
+
+    private static final long TOKEN_LIFETIME_MS = 86_400_000L;
+
+    private static final long REVOKED_AT = 1_700_000_000_500L;
+
+    private static final Date BEFORE_REVOCATION = new Date(REVOKED_AT - 1_500);
+
+    private static final Date AFTER_REVOCATION = new Date(REVOKED_AT + 1_500);
+
+    private TokenRevocationRegistry tokenRevocationRegistry;
+
+    @BeforeEach
+    void setUp() {
+        tokenRevocationRegistry = new TokenRevocationRegistry(1_000, TOKEN_LIFETIME_MS, "", 10_000);
+    }
+
+    @Test
+    void isRevoked_WithTokenIssuedBeforeTheRevocation_ShouldReturnTrue() {
+        tokenRevocationRegistry.revoke(1L, REVOKED_AT);
+
+        assertTrue(tokenRevocationRegistry.isRevoked(1L, BEFORE_REVOCATION));
+        assertFalse(tokenRevocationRegistry.isRevoked(2L, BEFORE_REVOCATION));
+    }
+
+    @Test
+    void isRevoked_WithTokenIssuedAfterTheRevocation_ShouldReturnFalse() {
+        tokenRevocationRegistry.revoke(1L, REVOKED_AT);
+
+        assertFalse(tokenRevocationRegistry.isRevoked(1L, AFTER_REVOCATION));
+        // iat has a one second resolution: a token of the same second is accepted
+        assertFalse(tokenRevocationRegistry.isRevoked(1L, new Date(REVOKED_AT / 1000 * 1000)));
+    }
+
+    @Test
+    void isRevoked_WithoutIssueTime_ShouldReturnTrueForARevokedUser() {
+        tokenRevocationRegistry.revoke(1L, REVOKED_AT);
+
+        assertTrue(tokenRevocationRegistry.isRevoked(1L, null));
+        assertFalse(tokenRevocationRegistry.isRevoked(2L, null));
+    }
+
+    @Test
+    void isRevoked_WithNullId_ShouldReturnFalse() {
+        assertFalse(tokenRevocationRegistry.isRevoked(null, BEFORE_REVOCATION));
+    }
+
+    @Test
+    void revoke_Again_ShouldMoveTheRevocationTimeForward() {
+        tokenRevocationRegistry.revoke(1L, REVOKED_AT);
+        tokenRevocationRegistry.revoke(1L, REVOKED_AT + 10_000);
+        tokenRevocationRegistry.revoke(1L, REVOKED_AT - 10_000);
+
+        assertEquals(1, tokenRevocationRegistry.size());
+        assertTrue(tokenRevocationRegistry.isRevoked(1L, AFTER_REVOCATION));
+    }
+
+    @Test
+    void revoke_BeyondExpectedEntries_ShouldKeepEveryId() {
+        for (long userId = 1; userId <= 5_000; userId++) {
+            tokenRevocationRegistry.revoke(userId, REVOKED_AT);
+        }
+
+        assertEquals(5_000, tokenRevocationRegistry.size());
+        for (long userId = 1; userId <= 5_000; userId++) {
+            assertTrue(tokenRevocationRegistry.isRevoked(userId, BEFORE_REVOCATION));
+        }
+        for (long userId = 5_001; userId <= 10_000; userId++) {
+            assertFalse(tokenRevocationRegistry.isRevoked(userId, BEFORE_REVOCATION));
+        }
+    }
+
+    @Test
+    void prune_ShouldDropTheUsersRevokedMoreThanATokenLifetimeAgo() {
+        for (long userId = 1; userId <= 2_000; userId++) {
+            tokenRevocationRegistry.revoke(userId, userId % 2 == 0 ? REVOKED_AT : REVOKED_AT + TOKEN_LIFETIME_MS);
+        }
+
+        assertEquals(1_000, tokenRevocationRegistry.prune(REVOKED_AT + TOKEN_LIFETIME_MS + 1));
+
+        assertEquals(1_000, tokenRevocationRegistry.size());
+        for (long userId = 1; userId <= 2_000; userId++) {
+            assertEquals(userId % 2 != 0, tokenRevocationRegistry.isRevoked(userId, BEFORE_REVOCATION));
+        }
+        assertEquals(0, tokenRevocationRegistry.prune(REVOKED_AT + TOKEN_LIFETIME_MS + 1));
+    }
+
+    @Test
+    void snapshot_ShouldBeReloadedOnStartup(@TempDir Path tempDir) throws Exception {
+        Path snapshot = tempDir.resolve("revoked-users.bin");
+        TokenRevocationRegistry persisted = new TokenRevocationRegistry(1_000, TOKEN_LIFETIME_MS, snapshot.toString(), 10_000);
+        persisted.init();
+        long now = System.currentTimeMillis();
+        for (long userId = 1; userId <= 1_000; userId++) {
+            persisted.revoke(userId * 3, now);
+        }
+        persisted.revoke(7L, now - 2 * TOKEN_LIFETIME_MS);
+        persisted.close();
+
+        TokenRevocationRegistry reloaded = new TokenRevocationRegistry(1_000, TOKEN_LIFETIME_MS, snapshot.toString(), 10_000);
+        reloaded.init();
+
+        // The expired revocation is pruned on load
+        assertEquals(1_000, reloaded.size());
+        assertTrue(reloaded.isRevoked(3L, new Date(now - 2_000)));
+        assertTrue(reloaded.isRevoked(3_000L, new Date(now - 2_000)));
+        assertFalse(reloaded.isRevoked(3L, new Date(now + 2_000)));
+        assertFalse(reloaded.isRevoked(4L, new Date(now - 2_000)));
+        assertFalse(reloaded.isRevoked(7L, new Date(now - 3 * TOKEN_LIFETIME_MS)));
+        // Delta-encoded: close ids take a single byte each, plus six for the time
+        assertTrue(Files.size(snapshot) < 7_100);
+        reloaded.close();
+    }
+
+    @Test
+    void init_WithSnapshotOfIdsOnly_ShouldRevokeTheirTokensUntilNow(@TempDir Path tempDir) throws Exception {
+        Path snapshot = tempDir.resolve("revoked-users.bin");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(snapshot))) {
+            out.writeInt(0x52564B31);
+            out.writeByte(2);
+            out.writeByte(5);
+            out.writeByte(4);
+        }
+
+        TokenRevocationRegistry reloaded = new TokenRevocationRegistry(1_000, TOKEN_LIFETIME_MS, snapshot.toString(), 10_000);
+        reloaded.init();
+
+        assertEquals(2, reloaded.size());
+        assertTrue(reloaded.isRevoked(5L, new Date(System.currentTimeMillis() - 2_000)));
+        assertTrue(reloaded.isRevoked(9L, new Date(System.currentTimeMillis() - 2_000)));
+        assertFalse(reloaded.isRevoked(9L, new Date(System.currentTimeMillis() + 2_000)));
+        reloaded.close();
+    }
+}
@@ -0,0 +1,60 @@
+package com.openclassrooms.starterjwt.unit.security.service;
+
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserDetailsCacheUnitTest {
+
+    private UserDetailsCache userDetailsCache;
+
+    private UserDetails userDetails;
+
+    @BeforeEach
+    void setUp() {
+        userDetailsCache = new UserDetailsCache(100, 60_000);
+        userDetails = UserDetailsImpl.builder()
+                .id(1L)
+                .username("test@test.com")
+                .build();
+    }
+
+    @Test
+    void getUserFromCache_ShouldCountHitsAndMisses() {
+        assertNull(userDetailsCache.getUserFromCache("test@test.com"));
+
+        userDetailsCache.putUserInCache(userDetails);
+
+        assertSame(userDetails, userDetailsCache.getUserFromCache("test@test.com"));
+        assertEquals(1, userDetailsCache.getHitCount());
+        assertEquals(1, userDetailsCache.getMissCount());
+    }
+
+    @Test
+    void removeUserFromCache_ShouldEvictByEmail() {
+        userDetailsCache.putUserInCache(userDetails);
+
+        userDetailsCache.removeUserFromCache("test@test.com");
+
+        assertNull(userDetailsCache.getUserFromCache("test@test.com"));
+    }
+
+    @Test
+    void removeUserFromCacheById_ShouldEvictOnlyThatUser() {
+        UserDetails other = UserDetailsImpl.builder()
+                .id(2L)
+                .username("other@test.com")
+                .build();
+        userDetailsCache.putUserInCache(userDetails);
+        userDetailsCache.putUserInCache(other);
+
+        userDetailsCache.removeUserFromCacheById(1L);
+
+        assertNull(userDetailsCache.getUserFromCache("test@test.com"));
+        assertSame(other, userDetailsCache.getUserFromCache("other@test.com"));
+    }
+}
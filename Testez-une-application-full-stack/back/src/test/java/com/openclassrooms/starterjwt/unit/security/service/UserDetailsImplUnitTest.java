@@ -59,6 +59,21 @@ public class UserDetailsImplUnitTest {
         assertTrue(authorities.isEmpty());
     }
 
+    @Test
+    @Tag("UserDetailsImpl.getAuthorities()")
+    @DisplayName("getAuthorities method for an admin")
+    void testGetAuthoritiesOfAdmin() {
+        UserDetailsImpl admin = UserDetailsImpl.builder()
+                .id(2L)
+                .username("admin")
+                .admin(true)
+                .password("testPassword")
+                .build();
+
+        assertEquals(1, admin.getAuthorities().size());
+        assertEquals("ROLE_ADMIN", admin.getAuthorities().iterator().next().getAuthority());
+    }
+
     @Test
     @Tag("UserDetailsImpl.isAccountNonExpired()")
     @DisplayName("isAccountNonExpired method")
@@ -2,6 +2,7 @@ package com.openclassrooms.starterjwt.unit.security.service;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 
 import java.util.Optional;
@@ -47,6 +48,7 @@ public class UserDetailsServiceImplUnitTest {
         user.setFirstName("John");
         user.setLastName("Doe");
         user.setPassword("testPassword");
+        user.setAdmin(true);
 
         when(userRepository.findByEmail("testuser@test.com")).thenReturn(Optional.of(user));
 
@@ -57,6 +59,7 @@ public class UserDetailsServiceImplUnitTest {
         assertEquals("John", ((UserDetailsImpl) userDetails).getFirstName());
         assertEquals("Doe", ((UserDetailsImpl) userDetails).getLastName());
         assertEquals("testPassword", userDetails.getPassword());
+        assertTrue(((UserDetailsImpl) userDetails).getAdmin());
     }
 
     @Test
@@ -68,4 +71,25 @@ public class UserDetailsServiceImplUnitTest {
         assertThrows(UsernameNotFoundException.class,
                 () -> userDetailsService.loadUserByUsername("nonexistentuser@test.com"));
     }
+
+    @Test
+    @Tag("UserDetailsServiceImpl.updatePassword")
+    @DisplayName("updatePassword stores the rehashed password")
+    void testUpdatePassword() {
+        User user = new User();
+        user.setId(1L);
+        user.setEmail("testuser@test.com");
+        user.setFirstName("John");
+        user.setLastName("Doe");
+        user.setPassword("oldHash");
+
+        when(userRepository.findByEmail("testuser@test.com")).thenReturn(Optional.of(user));
+        when(userRepository.save(user)).thenReturn(user);
+
+        UserDetails userDetails = userDetailsService.updatePassword(
+                UserDetailsImpl.builder().username("testuser@test.com").password("oldHash").build(), "newHash");
+
+        assertEquals("newHash", user.getPassword());
+        assertEquals("newHash", userDetails.getPassword());
+    }
 }
@@ -0,0 +1,525 @@
+package com.openclassrooms.starterjwt.unit.service;
+
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import com.openclassrooms.starterjwt.services.BookingEngine;
+import com.openclassrooms.starterjwt.services.BookingOutcome;
+import com.openclassrooms.starterjwt.services.ResourceVersions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookingEngineUnitTest {
+
+    private static final String INSERT_PARTICIPANT = "INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)";
+
+    private static final String DELETE_PARTICIPANT = "DELETE FROM PARTICIPATE WHERE session_id = ? AND user_id = ?";
+
+    private static final String INSERT_WAITLIST = "INSERT INTO WAITLIST (session_id, user_id) VALUES (?, ?)";
+
+    private static final String DELETE_WAITLIST = "DELETE FROM WAITLIST WHERE session_id = ? AND user_id = ?";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private BookingEngine bookingEngine;
+
+    @BeforeEach
+    void setUp() {
+        bookingEngine = new BookingEngine(jdbcTemplate, transactionManager, new ResourceVersions(), 10_000);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void givenSession(Long sessionId, Integer capacity, List<Long> participants, List<Long> waiting) {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(sessionId)))
+                .thenReturn(capacity == null ? Collections.emptyList() : List.of(capacity));
+        if (capacity != null) {
+            when(jdbcTemplate.queryForList(startsWith("SELECT user_id FROM PARTICIPATE"), eq(Long.class), eq(sessionId)))
+                    .thenReturn(participants);
+            when(jdbcTemplate.queryForList(contains("FROM WAITLIST"), eq(Long.class), eq(sessionId)))
+                    .thenReturn(waiting);
+        }
+    }
+
+    @Test
+    @Tag("BookingEngine.book()")
+    @DisplayName("Exactly capacity bookings succeed when hundreds of users book at once, the others queue in order")
+    void book_UnderContention_ShouldNeverOverbook() throws Exception {
+        // * Arrange
+        int capacity = 50;
+        int users = 500;
+        givenSession(1L, capacity, List.of(), List.of());
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        Set<Integer> positions = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+
+        // * Act
+        for (long userId = 1; userId <= users; userId++) {
+            long id = userId;
+            futures.add(executor.submit(() -> {
+                start.await();
+                BookingOutcome outcome = bookingEngine.book(1L, id);
+                if (outcome.getStatus() == BookingOutcome.Status.BOOKED) {
+                    accepted.incrementAndGet();
+                } else {
+                    positions.add(outcome.getPosition());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // * Assert
+        assertEquals(capacity, accepted.get());
+        assertEquals(capacity, bookingEngine.getBookedSeats(1L));
+        assertEquals(IntStream.rangeClosed(1, users - capacity).boxed().collect(Collectors.toSet()), positions);
+        assertEquals(users, bookingEngine.getPendingWriteCount());
+    }
+
+    @Test
+    @Tag("BookingEngine.book()")
+    @DisplayName("A participant loaded from the database cannot book twice")
+    void book_WithExistingParticipant_ShouldThrowBadRequest() {
+        // * Arrange
+        givenSession(1L, 10, List.of(7L), List.of());
+
+        // * Act
+        // * Assert
+        assertThrows(BadRequestException.class, () -> bookingEngine.book(1L, 7L));
+        assertEquals(1, bookingEngine.getBookedSeats(1L));
+    }
+
+    @Test
+    @Tag("BookingEngine.book()")
+    @DisplayName("A waiting user cannot join the waitlist twice")
+    void book_WhenAlreadyWaiting_ShouldThrowBadRequest() {
+        // * Arrange
+        givenSession(1L, 1, List.of(7L), List.of(8L));
+
+        // * Act
+        // * Assert
+        assertThrows(BadRequestException.class, () -> bookingEngine.book(1L, 8L));
+        assertEquals(BookingOutcome.waitlisted(2), bookingEngine.book(1L, 9L));
+    }
+
+    @Test
+    @Tag("BookingEngine.book()")
+    @DisplayName("Booking an unknown session is rejected")
+    void book_WithUnknownSession_ShouldThrowNotFound() {
+        // * Arrange
+        givenSession(1L, null, null, null);
+
+        // * Act
+        // * Assert
+        assertThrows(NotFoundException.class, () -> bookingEngine.book(1L, 7L));
+    }
+
+    @Test
+    @Tag("BookingEngine.cancel()")
+    @DisplayName("Cancelling frees the seat when nobody is waiting")
+    void cancel_WithEmptyWaitlist_ShouldReleaseTheSeat() {
+        // * Arrange
+        givenSession(1L, 1, List.of(7L), List.of());
+
+        // * Act
+        bookingEngine.cancel(1L, 7L);
+        BookingOutcome result = bookingEngine.book(1L, 8L);
+
+        // * Assert
+        assertEquals(BookingOutcome.BOOKED, result);
+        assertEquals(1, bookingEngine.getBookedSeats(1L));
+        assertThrows(BadRequestException.class, () -> bookingEngine.cancel(1L, 7L));
+    }
+
+    @Test
+    @Tag("BookingEngine.cancel()")
+    @DisplayName("Cancelling hands the seat to the head of the waitlist")
+    void cancel_ShouldPromoteTheHeadOfTheWaitlist() {
+        // * Arrange
+        givenSession(1L, 1, List.of(7L), List.of(8L, 9L));
+
+        // * Act
+        bookingEngine.cancel(1L, 7L);
+
+        // * Assert
+        assertNull(bookingEngine.getWaitlistPosition(1L, 8L));
+        assertEquals(1, bookingEngine.getWaitlistPosition(1L, 9L));
+        assertEquals(1, bookingEngine.getBookedSeats(1L));
+        assertThrows(BadRequestException.class, () -> bookingEngine.book(1L, 8L));
+    }
+
+    @Test
+    @Tag("BookingEngine.cancel()")
+    @DisplayName("Leaving the waitlist moves the users behind one place up")
+    void cancel_WhenWaiting_ShouldLeaveTheWaitlist() {
+        // * Arrange
+        givenSession(1L, 1, List.of(7L), List.of(8L, 9L, 10L));
+
+        // * Act
+        bookingEngine.cancel(1L, 9L);
+
+        // * Assert
+        assertEquals(1, bookingEngine.getWaitlistPosition(1L, 8L));
+        assertNull(bookingEngine.getWaitlistPosition(1L, 9L));
+        assertEquals(2, bookingEngine.getWaitlistPosition(1L, 10L));
+        assertEquals(BookingOutcome.waitlisted(3), bookingEngine.book(1L, 11L));
+    }
+
+    @Test
+    @Tag("BookingEngine.book()")
+    @DisplayName("Seats left free when a session is read back go to the head of the waitlist")
+    @SuppressWarnings("unchecked")
+    void book_WhenLoadedWithFreeSeats_ShouldPromoteTheWaitlist() {
+        // * Arrange
+        givenSession(1L, 3, List.of(7L), List.of(8L, 9L, 10L));
+
+        // * Act
+        BookingOutcome outcome = bookingEngine.book(1L, 11L);
+        bookingEngine.flush();
+
+        // * Assert
+        assertEquals(BookingOutcome.waitlisted(2), outcome);
+        assertEquals(3, bookingEngine.getBookedSeats(1L));
+        assertNull(bookingEngine.getWaitlistPosition(1L, 8L));
+        assertNull(bookingEngine.getWaitlistPosition(1L, 9L));
+        assertEquals(1, bookingEngine.getWaitlistPosition(1L, 10L));
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, atLeastOnce()).batchUpdate(eq(INSERT_PARTICIPANT), rows.capture());
+        assertEquals(List.of(8L, 9L), rows.getAllValues().stream()
+                .flatMap(List::stream)
+                .map(row -> row[1])
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    @Tag("BookingEngine.getWaitlistPosition()")
+    @DisplayName("Waitlist positions stay exact through thousands of joins, leaves and promotions")
+    void getWaitlistPosition_AfterManyChanges_ShouldMatchTheQueueOrder() {
+        // * Arrange
+        givenSession(1L, 1, List.of(), List.of());
+        Random random = new Random(42);
+        List<Long> queue = new ArrayList<>();
+        Long participant = null;
+
+        for (int i = 0; i < 5000; i++) {
+            // * Act
+            Long userId = (long) random.nextInt(80);
+            if (userId.equals(participant)) {
+                bookingEngine.cancel(1L, userId);
+                participant = queue.isEmpty() ? null : queue.remove(0);
+            } else if (queue.contains(userId)) {
+                bookingEngine.cancel(1L, userId);
+                queue.remove(userId);
+            } else {
+                BookingOutcome outcome = bookingEngine.book(1L, userId);
+                if (participant == null) {
+                    participant = userId;
+                    assertEquals(BookingOutcome.BOOKED, outcome);
+                } else {
+                    queue.add(userId);
+                    assertEquals(BookingOutcome.waitlisted(queue.size()), outcome);
+                }
+            }
+
+            // * Assert
+            for (int index = 0; index < queue.size(); index++) {
+                assertEquals(index + 1, bookingEngine.getWaitlistPosition(1L, queue.get(index)));
+            }
+        }
+    }
+
+    @Test
+    @Tag("BookingEngine.flush()")
+    @DisplayName("A cancellation and its promotion are flushed in order, in one transaction")
+    @SuppressWarnings("unchecked")
+    void flush_ShouldWriteCancellationAndPromotionTogether() {
+        // * Arrange
+        givenSession(1L, 1, List.of(7L), List.of(8L));
+        bookingEngine.cancel(1L, 7L);
+
+        // * Act
+        bookingEngine.flush();
+
+        // * Assert
+        InOrder order = inOrder(jdbcTemplate);
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        order.verify(jdbcTemplate).batchUpdate(eq(DELETE_PARTICIPANT), rows.capture());
+        order.verify(jdbcTemplate).batchUpdate(eq(INSERT_PARTICIPANT), rows.capture());
+        order.verify(jdbcTemplate).batchUpdate(eq(DELETE_WAITLIST), rows.capture());
+        assertEquals(8L, rows.getAllValues().get(1).get(0)[1]);
+        verify(transactionManager, times(1)).getTransaction(any());
+        assertEquals(0, bookingEngine.getPendingWriteCount());
+    }
+
+    @Test
+    @Tag("BookingEngine.flush()")
+    @DisplayName("A write the database cannot take now is kept, in order, until a later flush writes it")
+    @SuppressWarnings("unchecked")
+    void flush_WhenTheDatabaseIsUnavailable_ShouldRetryTheWrites() {
+        // * Arrange
+        givenSession(1L, 10, List.of(), List.of());
+        bookingEngine.book(1L, 7L);
+        bookingEngine.book(1L, 8L);
+        when(jdbcTemplate.batchUpdate(anyString(), any(List.class))).thenThrow(new QueryTimeoutException("timeout"));
+        when(jdbcTemplate.update(INSERT_PARTICIPANT, 1L, 7L))
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenReturn(1);
+
+        // * Act
+        bookingEngine.flush();
+
+        // * Assert
+        assertEquals(2, bookingEngine.getPendingWriteCount());
+        verify(jdbcTemplate, never()).update(INSERT_PARTICIPANT, 1L, 8L);
+        // The session cannot be read back while its writes still fail
+        bookingEngine.evict(1L);
+        assertThrows(ServiceUnavailableException.class, () -> bookingEngine.book(1L, 9L));
+
+        // * Act
+        bookingEngine.flush();
+
+        // * Assert
+        InOrder order = inOrder(jdbcTemplate);
+        order.verify(jdbcTemplate).update(INSERT_PARTICIPANT, 1L, 7L);
+        order.verify(jdbcTemplate).update(INSERT_PARTICIPANT, 1L, 8L);
+        assertEquals(0, bookingEngine.getPendingWriteCount());
+        assertEquals(0, bookingEngine.getLostWriteCount());
+    }
+
+    @Test
+    @Tag("BookingEngine.flush()")
+    @DisplayName("A write breaking a constraint is dropped and counted as lost")
+    @SuppressWarnings("unchecked")
+    void flush_WhenAWriteBreaksAConstraint_ShouldCountItAsLost() {
+        // * Arrange
+        givenSession(1L, 10, List.of(), List.of());
+        bookingEngine.book(1L, 7L);
+        bookingEngine.book(1L, 8L);
+        when(jdbcTemplate.batchUpdate(anyString(), any(List.class)))
+                .thenThrow(new DataIntegrityViolationException("fk"))
+                .thenReturn(new int[0]);
+        when(jdbcTemplate.update(INSERT_PARTICIPANT, 1L, 7L)).thenThrow(new DataIntegrityViolationException("fk"));
+        when(jdbcTemplate.update(INSERT_PARTICIPANT, 1L, 8L)).thenReturn(1);
+
+        // * Act
+        bookingEngine.flush();
+
+        // * Assert
+        assertEquals(0, bookingEngine.getPendingWriteCount());
+        assertEquals(1, bookingEngine.getLostWriteCount());
+        // The session is read back from the database
+        assertEquals(BookingOutcome.BOOKED, bookingEngine.book(1L, 7L));
+        verify(jdbcTemplate, times(2)).queryForList(startsWith("SELECT user_id FROM PARTICIPATE"), eq(Long.class), eq(1L));
+    }
+
+    @Test
+    @Tag("BookingEngine.bookAll()")
+    @DisplayName("A batch is written in its own transaction, after the writes queued before it")
+    @SuppressWarnings("unchecked")
+    void bookAll_ShouldWriteTheBatchInItsOwnTransaction() {
+        // * Arrange
+        givenSession(1L, 2, List.of(7L), List.of());
+        givenSession(2L, null, List.of(), List.of());
+        bookingEngine.cancel(1L, 7L);
+
+        // * Act
+        List<BookingOutcome> outcomes = bookingEngine.bookAll(List.of(1L, 1L, 1L, 1L, 2L), List.of(7L, 8L, 9L, 8L, 7L));
+
+        // * Assert
+        assertEquals(List.of(BookingOutcome.BOOKED, BookingOutcome.BOOKED, BookingOutcome.waitlisted(1),
+                BookingOutcome.ALREADY_REGISTERED, BookingOutcome.SESSION_NOT_FOUND), outcomes);
+        InOrder order = inOrder(transactionManager, jdbcTemplate);
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(jdbcTemplate).batchUpdate(eq(DELETE_PARTICIPANT), any(List.class));
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(jdbcTemplate).batchUpdate(eq(INSERT_PARTICIPANT), any(List.class));
+        order.verify(jdbcTemplate).batchUpdate(eq(INSERT_WAITLIST), any(List.class));
+        assertEquals(0, bookingEngine.getPendingWriteCount());
+        assertEquals(2, bookingEngine.getBookedSeats(1L));
+    }
+
+    @Test
+    @Tag("BookingEngine.bookAll()")
+    @DisplayName("A batch the database does not take is undone in memory and reported as not written")
+    @SuppressWarnings("unchecked")
+    void bookAll_WhenTheTransactionFails_ShouldUndoTheBatch() {
+        // * Arrange
+        givenSession(1L, 2, List.of(6L), List.of());
+        when(jdbcTemplate.batchUpdate(eq(INSERT_PARTICIPANT), any(List.class))).thenThrow(new QueryTimeoutException("timeout"));
+
+        // * Act
+        List<BookingOutcome> outcomes = bookingEngine.bookAll(List.of(1L, 1L), List.of(7L, 8L));
+
+        // * Assert
+        assertEquals(List.of(BookingOutcome.NOT_WRITTEN, BookingOutcome.NOT_WRITTEN), outcomes);
+        assertEquals(0, bookingEngine.getPendingWriteCount());
+        assertEquals(1, bookingEngine.getBookedSeats(1L));
+        assertNull(bookingEngine.getWaitlistPosition(1L, 8L));
+        assertEquals(BookingOutcome.BOOKED, bookingEngine.book(1L, 8L));
+    }
+
+    @Test
+    @Tag("BookingEngine.remove()")
+    @DisplayName("Removing a session flushes its queued writes before the delete, then rejects its bookings")
+    @SuppressWarnings("unchecked")
+    void remove_ShouldFlushBeforeTheDeleteThenRejectBookings() {
+        // * Arrange
+        givenSession(1L, 1, List.of(), List.of());
+        bookingEngine.book(1L, 7L);
+        bookingEngine.book(1L, 8L);
+        Runnable delete = mock(Runnable.class);
+
+        // * Act
+        bookingEngine.remove(1L, delete);
+
+        // * Assert
+        InOrder order = inOrder(jdbcTemplate, delete);
+        order.verify(jdbcTemplate, atLeastOnce()).batchUpdate(eq(INSERT_WAITLIST), any(List.class));
+        order.verify(delete).run();
+        assertEquals(0, bookingEngine.getPendingWriteCount());
+        // Read back from the table, where the session is gone
+        givenSession(1L, null, null, null);
+        assertThrows(NotFoundException.class, () -> bookingEngine.book(1L, 9L));
+    }
+
+    @Test
+    @Tag("BookingEngine.evict()")
+    @DisplayName("Evicting a session during a booking storm never hands out more seats than its capacity")
+    @SuppressWarnings("unchecked")
+    void evict_DuringABookingStorm_ShouldNeverOverbook() throws Exception {
+        // * Arrange
+        int capacity = 5;
+        // PARTICIPATE and WAITLIST rows of session 1, in insertion order
+        Set<Long> participants = ConcurrentHashMap.newKeySet();
+        Set<Long> waiting = Collections.synchronizedSet(new LinkedHashSet<>());
+        AtomicInteger maxParticipants = new AtomicInteger();
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), eq(1L))).thenReturn(List.of(capacity));
+        when(jdbcTemplate.queryForList(startsWith("SELECT user_id FROM PARTICIPATE"), eq(Long.class), eq(1L)))
+                .thenAnswer(invocation -> new ArrayList<>(participants));
+        when(jdbcTemplate.queryForList(contains("FROM WAITLIST"), eq(Long.class), eq(1L)))
+                .thenAnswer(invocation -> {
+                    synchronized (waiting) {
+                        return new ArrayList<>(waiting);
+                    }
+                });
+        when(jdbcTemplate.batchUpdate(anyString(), any(List.class))).thenAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            for (Object[] row : (List<Object[]>) invocation.getArgument(1)) {
+                if (sql.equals(INSERT_PARTICIPANT)) {
+                    participants.add((Long) row[1]);
+                    maxParticipants.accumulateAndGet(participants.size(), Math::max);
+                } else if (sql.equals(DELETE_PARTICIPANT)) {
+                    participants.remove((Long) row[1]);
+                } else if (sql.startsWith("INSERT INTO WAITLIST")) {
+                    waiting.add((Long) row[1]);
+                } else if (sql.equals(DELETE_WAITLIST)) {
+                    waiting.remove((Long) row[1]);
+                }
+            }
+            return new int[0];
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(33);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean storming = new AtomicBoolean(true);
+        List<Future<?>> futures = new ArrayList<>();
+
+        // * Act
+        for (long thread = 0; thread < 32; thread++) {
+            long firstUser = thread * 5;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < 2_000; i++) {
+                    long userId = firstUser + i % 5;
+                    try {
+                        if (bookingEngine.book(1L, userId).getStatus() == BookingOutcome.Status.BOOKED || i % 2 == 0) {
+                            bookingEngine.cancel(1L, userId);
+                        }
+                    } catch (BadRequestException e) {
+                        // Already booked or waiting from an earlier round
+                    }
+                }
+                return null;
+            }));
+        }
+        // What SessionService.update does around its save
+        Future<?> updates = executor.submit(() -> {
+            start.await();
+            while (storming.get()) {
+                bookingEngine.flush();
+                bookingEngine.evict(1L);
+            }
+            return null;
+        });
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        storming.set(false);
+        updates.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        bookingEngine.flush();
+
+        // * Assert
+        assertTrue(maxParticipants.get() <= capacity, maxParticipants.get() + " participants for " + capacity + " seats");
+        assertTrue(participants.size() <= capacity);
+    }
+}
@@ -0,0 +1,77 @@
+package com.openclassrooms.starterjwt.unit.service;
+
+import com.openclassrooms.starterjwt.services.BulkTable;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BulkTableUnitTest {
+
+    @Test
+    @Tag("BulkTable.toArguments()")
+    @DisplayName("Converting a CSV row of strings, empty values standing for null")
+    void toArguments_convertsCsvStrings() {
+        // * Arrange
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", "7");
+        row.put("name", "Yin");
+        row.put("date", "2024-03-01T18:30:00");
+        row.put("description", "");
+        row.put("capacity", "");
+        row.put("teacher_id", "2");
+
+        // * Act
+        Object[] arguments = BulkTable.SESSIONS.toArguments(row);
+
+        // * Assert
+        assertArrayEquals(new Object[]{7L, "Yin", Timestamp.valueOf(LocalDateTime.of(2024, 3, 1, 18, 30)), "", null, 2L,
+                null, null}, arguments);
+    }
+
+    @Test
+    @Tag("BulkTable.toArguments()")
+    @DisplayName("Converting an NDJSON row of typed values")
+    void toArguments_convertsJsonValues() {
+        // * Arrange
+        Map<String, Object> row = Map.of("id", 3, "email", "yoga@studio.com", "admin", true);
+
+        // * Act
+        Object[] arguments = BulkTable.USERS.toArguments(row);
+
+        // * Assert
+        assertEquals(3L, arguments[0]);
+        assertEquals("yoga@studio.com", arguments[1]);
+        assertEquals(true, arguments[5]);
+    }
+
+    @Test
+    @Tag("BulkTable.toArguments()")
+    @DisplayName("Rejecting unknown columns, missing keys and mistyped values")
+    void toArguments_rejectsInvalidRows() {
+        // * Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> BulkTable.TEACHERS.toArguments(Map.of("id", 1, "age", 40)));
+        assertThrows(IllegalArgumentException.class, () -> BulkTable.PARTICIPATE.toArguments(Map.of("session_id", 1)));
+        assertThrows(IllegalArgumentException.class, () -> BulkTable.SESSIONS.toArguments(Map.of("id", "one")));
+        assertThrows(IllegalArgumentException.class, () -> BulkTable.USERS.toArguments(Map.of("id", 1, "admin", "yes")));
+        assertThrows(IllegalArgumentException.class,
+                () -> BulkTable.TEACHERS.toArguments(Map.of("id", 1, "created_at", "yesterday")));
+    }
+
+    @Test
+    @Tag("BulkTable.getInsertSql()")
+    @DisplayName("Inserting every column of the table")
+    void getInsertSql_listsEveryColumn() {
+        // * Assert
+        assertEquals("INSERT INTO PARTICIPATE (session_id, user_id) VALUES (?, ?)", BulkTable.PARTICIPATE.getInsertSql());
+        assertEquals(BulkTable.SESSIONS.getColumns().size(), BulkTable.SESSIONS.getSqlTypes().length);
+    }
+}
@@ -0,0 +1,67 @@
+package com.openclassrooms.starterjwt.unit.service;
+
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.services.KnownUserIds;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class KnownUserIdsUnitTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private KnownUserIds knownUserIds;
+
+    @BeforeEach
+    void setUp() {
+        knownUserIds = new KnownUserIds(userRepository, 100, 60_000);
+    }
+
+    @Test
+    void exists_ShouldOnlyQueryAnExistingUserOnce() {
+        when(userRepository.existsById(1L)).thenReturn(true);
+
+        assertTrue(knownUserIds.exists(1L));
+        assertTrue(knownUserIds.exists(1L));
+
+        verify(userRepository, times(1)).existsById(1L);
+        assertEquals(1, knownUserIds.getHitCount());
+    }
+
+    @Test
+    void exists_ShouldNotCacheAMissingUser() {
+        when(userRepository.existsById(2L)).thenReturn(false, true);
+
+        assertFalse(knownUserIds.exists(2L));
+        assertTrue(knownUserIds.exists(2L));
+    }
+
+    @Test
+    void existing_ShouldOnlyQueryTheIdsMissingFromTheCache() {
+        when(userRepository.existsById(1L)).thenReturn(true);
+        when(userRepository.findExistingIds(List.of(2L, 3L))).thenReturn(List.of(2L));
+        knownUserIds.exists(1L);
+
+        assertEquals(Set.of(1L, 2L), knownUserIds.existing(List.of(1L, 2L, 3L)));
+    }
+
+    @Test
+    void forget_ShouldQueryTheUserAgain() {
+        when(userRepository.existsById(1L)).thenReturn(true, false);
+        knownUserIds.exists(1L);
+
+        knownUserIds.forget(1L);
+
+        assertFalse(knownUserIds.exists(1L));
+    }
+}
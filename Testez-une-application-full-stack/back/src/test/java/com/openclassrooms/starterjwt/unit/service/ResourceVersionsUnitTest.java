@@ -0,0 +1,53 @@
+package com.openclassrooms.starterjwt.unit.service;
+
+import com.openclassrooms.starterjwt.services.ResourceVersions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResourceVersionsUnitTest {
+
+    private ResourceVersions resourceVersions;
+
+    @BeforeEach
+    void setUp() {
+        resourceVersions = new ResourceVersions();
+    }
+
+    @Test
+    void listETag_ShouldChangeWithAnyItem() {
+        String before = resourceVersions.sessions().listETag();
+
+        resourceVersions.sessions().changed(1L);
+
+        assertNotEquals(before, resourceVersions.sessions().listETag());
+        assertEquals(1, resourceVersions.sessions().getVersion());
+        assertTrue(before.startsWith("\"") && before.endsWith("\""));
+    }
+
+    @Test
+    void itemETag_ShouldOnlyChangeWithThatItem() {
+        LocalDateTime updatedAt = LocalDateTime.of(2024, 1, 1, 10, 0);
+        String first = resourceVersions.sessions().itemETag(1L, updatedAt);
+        String second = resourceVersions.sessions().itemETag(2L, updatedAt);
+
+        resourceVersions.sessions().changed(1L);
+
+        assertNotEquals(first, resourceVersions.sessions().itemETag(1L, updatedAt));
+        assertEquals(second, resourceVersions.sessions().itemETag(2L, updatedAt));
+        assertNotEquals(second, resourceVersions.sessions().itemETag(2L, updatedAt.plusSeconds(1)));
+    }
+
+    @Test
+    void versions_ShouldBeKeptPerResource() {
+        String teachers = resourceVersions.teachers().listETag();
+
+        resourceVersions.sessions().removed(1L);
+
+        assertEquals(teachers, resourceVersions.teachers().listETag());
+        assertNotEquals(resourceVersions.sessions().itemETag(1L, null), resourceVersions.teachers().itemETag(1L, null));
+    }
+}
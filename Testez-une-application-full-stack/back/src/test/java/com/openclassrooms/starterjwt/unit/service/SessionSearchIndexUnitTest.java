@@ -0,0 +1,142 @@
+package com.openclassrooms.starterjwt.unit.service;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.services.SessionSearchIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SessionSearchIndexUnitTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private SessionSearchIndex sessionSearchIndex;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // An empty path keeps the index in memory
+        sessionSearchIndex = new SessionSearchIndex(jdbcTemplate, "");
+        sessionSearchIndex.init();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        sessionSearchIndex.close();
+    }
+
+    private static Session session(Long id, String name, String description) {
+        return Session.builder().id(id).name(name).description(description).build();
+    }
+
+    @Test
+    @Tag("SessionSearchIndex.search()")
+    @DisplayName("Ranking a match in the name above a match in the description")
+    void search_ranksNameMatchesFirst() {
+        // * Arrange
+        sessionSearchIndex.index(session(1L, "Morning stretch", "A gentle vinyasa flow to wake up"));
+        sessionSearchIndex.index(session(2L, "Vinyasa flow", "Dynamic sequence"));
+        sessionSearchIndex.index(session(3L, "Yin", "Long holds"));
+
+        // * Act
+        Page<Long> result = sessionSearchIndex.search("vinyasa", 0, 10);
+
+        // * Assert
+        assertEquals(List.of(2L, 1L), result.getContent());
+        assertEquals(2, result.getTotalElements());
+    }
+
+    @Test
+    @Tag("SessionSearchIndex.search()")
+    @DisplayName("Requiring every term and paginating the ranked ids")
+    void search_requiresAllTermsAndPaginates() {
+        // * Arrange
+        for (long id = 1; id <= 5; id++) {
+            sessionSearchIndex.index(session(id, "Hatha " + id, "Breathing and posture"));
+        }
+        sessionSearchIndex.index(session(6L, "Hatha 6", "Posture only"));
+
+        // * Act
+        Page<Long> firstPage = sessionSearchIndex.search("breathing posture", 0, 2);
+        Page<Long> lastPage = sessionSearchIndex.search("breathing posture", 2, 2);
+
+        // * Assert
+        assertEquals(5, firstPage.getTotalElements());
+        assertEquals(2, firstPage.getContent().size());
+        assertEquals(1, lastPage.getContent().size());
+    }
+
+    @Test
+    @Tag("SessionSearchIndex.index()")
+    @DisplayName("Replacing the document of an updated session and dropping a removed one")
+    void index_updatesAndRemovesDocuments() {
+        // * Arrange
+        sessionSearchIndex.index(session(1L, "Pilates", "Core work"));
+        sessionSearchIndex.index(session(1L, "Ashtanga", "Core work"));
+        sessionSearchIndex.index(session(2L, "Pilates mat", "Core work"));
+
+        // * Act
+        sessionSearchIndex.remove(2L);
+
+        // * Assert
+        assertTrue(sessionSearchIndex.search("pilates", 0, 10).isEmpty());
+        assertEquals(List.of(1L), sessionSearchIndex.search("ashtanga", 0, 10).getContent());
+    }
+
+    @Test
+    @Tag("SessionSearchIndex.rebuild()")
+    @DisplayName("Rebuilding the index from the SESSIONS rows")
+    void rebuild_replacesIndexWithDatabaseRows() throws Exception {
+        // * Arrange
+        sessionSearchIndex.index(session(9L, "Stale", "Deleted meanwhile"));
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getLong(1)).thenReturn(1L, 2L);
+        when(resultSet.getString(2)).thenReturn("Kundalini", "Restorative");
+        when(resultSet.getString(3)).thenReturn("Energy", "Kundalini breathing");
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(resultSet);
+            handler.processRow(resultSet);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+
+        // * Act
+        int indexed = sessionSearchIndex.rebuild();
+
+        // * Assert
+        assertEquals(2, indexed);
+        assertEquals(List.of(1L, 2L), sessionSearchIndex.search("kundalini", 0, 10).getContent());
+        assertTrue(sessionSearchIndex.search("stale", 0, 10).isEmpty());
+    }
+
+    @Test
+    @Tag("SessionSearchIndex.search()")
+    @DisplayName("Refusing pages beyond the result window")
+    void search_beyondResultWindow_throws() {
+        // * Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> sessionSearchIndex.search("yoga", SessionSearchIndex.MAX_RESULT_WINDOW / 10, 10));
+    }
+}
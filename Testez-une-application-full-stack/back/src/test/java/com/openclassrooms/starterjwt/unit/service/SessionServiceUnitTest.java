@@ -1,8 +1,15 @@
 package com.openclassrooms.starterjwt.unit.service;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.notNull;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -18,22 +25,43 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.test.context.SpringBootTest;
-
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionSummaryDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.SessionTombstone;
 import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.payload.request.BulkParticipationRequest.Participation;
+import com.openclassrooms.starterjwt.payload.response.ParticipationResult;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.SessionTombstoneRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.services.BookingEngine;
+import com.openclassrooms.starterjwt.services.BookingOutcome;
+import com.openclassrooms.starterjwt.services.KnownUserIds;
+import com.openclassrooms.starterjwt.services.ResourceVersions;
+import com.openclassrooms.starterjwt.services.SessionChangeLog;
+import com.openclassrooms.starterjwt.services.SessionSearchIndex;
 import com.openclassrooms.starterjwt.services.SessionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 @SpringBootTest
 @ExtendWith(MockitoExtension.class)
 public class SessionServiceUnitTest {
-    @InjectMocks
+    private static final long RETENTION_MS = 24L * 60 * 60 * 1000;
+
     private SessionService sessionService;
 
     @Mock
@@ -43,6 +71,17 @@ public class SessionServiceUnitTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private BookingEngine bookingEngine;
+
+    @Mock
+    private SessionSearchIndex sessionSearchIndex;
+
+    @Mock
+    private SessionTombstoneRepository sessionTombstoneRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
     private Session session;
 
     @BeforeEach
@@ -66,12 +105,15 @@ public class SessionServiceUnitTest {
         arrayOfUsers.add(mockedUser);
 
         session = new Session(1L, "Test session",
-                currentDate, "Test",
+                currentDate, "Test", null,
                 teacher,
                 arrayOfUsers, currentTime,
                 currentTime);
 
-        sessionService = new SessionService(sessionRepository, userRepository);
+        meterRegistry = new SimpleMeterRegistry();
+        sessionService = new SessionService(sessionRepository, new KnownUserIds(userRepository, 100, 60_000), bookingEngine, sessionSearchIndex,
+                new ResourceVersions(), new SessionChangeLog(sessionRepository, sessionTombstoneRepository, RETENTION_MS),
+                meterRegistry);
     }
 
     @Test
@@ -86,6 +128,7 @@ public class SessionServiceUnitTest {
 
         // * Assert
         verify(sessionRepository).save(session);
+        verify(sessionSearchIndex).index(session);
 
         assertEquals(session, result);
     }
@@ -96,12 +139,51 @@ public class SessionServiceUnitTest {
     public void testDeletingASession() {
         // * Arrange
         doNothing().when(sessionRepository).deleteById(session.getId());
+        // The engine runs the delete once the session is retired
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(1).run();
+            return null;
+        }).when(bookingEngine).remove(eq(session.getId()), any(Runnable.class));
 
         // * Act
         sessionService.delete(session.getId());
 
         // * Assert
         verify(sessionRepository).deleteById(session.getId());
+        verify(sessionSearchIndex).remove(session.getId());
+        ArgumentCaptor<SessionTombstone> tombstone = ArgumentCaptor.forClass(SessionTombstone.class);
+        verify(sessionTombstoneRepository).save(tombstone.capture());
+        assertEquals(session.getId(), tombstone.getValue().getSessionId());
+        verify(sessionTombstoneRepository).deleteDeletedBefore(any(LocalDateTime.class));
+    }
+
+    @Test
+    @Tag("SessionService.findUpdatedSince()")
+    @DisplayName("Reading the sessions updated and deleted since a point in time")
+    public void testFindingSessionChanges() {
+        // * Arrange
+        Date since = new Date(System.currentTimeMillis() - 60_000);
+        LocalDateTime sinceDateTime = LocalDateTime.ofInstant(since.toInstant(), ZoneId.systemDefault());
+        when(sessionRepository.findByUpdatedAtAfterOrderByUpdatedAtAscIdAsc(sinceDateTime)).thenReturn(List.of(session));
+        when(sessionTombstoneRepository.findSessionIdsDeletedAfter(sinceDateTime)).thenReturn(List.of(7L));
+
+        // * Act
+        boolean inChangeLog = sessionService.isInChangeLog(since);
+        List<Session> updated = sessionService.findUpdatedSince(since);
+        List<Long> deleted = sessionService.findDeletedSince(since);
+
+        // * Assert
+        assertTrue(inChangeLog);
+        assertEquals(List.of(session), updated);
+        assertEquals(List.of(7L), deleted);
+    }
+
+    @Test
+    @Tag("SessionService.isInChangeLog()")
+    @DisplayName("Reporting a sync older than the tombstone retention")
+    public void testSyncOlderThanRetentionIsNotInChangeLog() {
+        // * Act & Assert
+        assertFalse(sessionService.isInChangeLog(new Date(System.currentTimeMillis() - 2 * RETENTION_MS)));
     }
 
     @Test
@@ -124,6 +206,105 @@ public class SessionServiceUnitTest {
         assertEquals(sessions, result);
     }
 
+    @Test
+    @Tag("SessionService.findAllSummaries()")
+    @DisplayName("Listing sessions as DTOs with their participant ids")
+    public void testFindingAllSessionSummaries() {
+        // * Arrange
+        SessionDto first = new SessionDto(1L, "First", new Date(), 1L, "Test", null, null, null);
+        SessionDto second = new SessionDto(2L, "Second", new Date(), 1L, "Test", null, null, null);
+        when(sessionRepository.findAllSummaries()).thenReturn(List.of(first, second));
+        when(sessionRepository.findAllParticipantIds()).thenReturn(List.of(
+                new Object[]{1L, 10L}, new Object[]{1L, 11L}, new Object[]{3L, 12L}));
+
+        // * Act
+        List<SessionDto> result = sessionService.findAllSummaries();
+
+        // * Assert
+        assertEquals(List.of(10L, 11L), result.get(0).getUsers());
+        assertTrue(result.get(1).getUsers().isEmpty());
+    }
+
+    @Test
+    @Tag("SessionService.searchText()")
+    @DisplayName("Loading full-text matches in the order ranked by the index, skipping deleted ones")
+    public void testSearchingSessionsByText() {
+        // * Arrange
+        Session other = new Session();
+        other.setId(2L);
+        when(sessionSearchIndex.search("yoga", 0, 10))
+                .thenReturn(new PageImpl<>(List.of(2L, 3L, 1L), PageRequest.of(0, 10), 3));
+        when(sessionRepository.findAllById(List.of(2L, 3L, 1L))).thenReturn(List.of(session, other));
+
+        // * Act
+        Page<Session> result = sessionService.searchText("yoga", 0, 10);
+
+        // * Assert
+        assertEquals(List.of(other, session), result.getContent());
+        assertEquals(2, result.getTotalElements());
+    }
+
+    @Test
+    @Tag("SessionService.searchText()")
+    @DisplayName("Not querying sessions when nothing matches")
+    public void testSearchingSessionsByTextWithoutMatch() {
+        // * Arrange
+        when(sessionSearchIndex.search("nothing", 0, 10)).thenReturn(Page.empty(PageRequest.of(0, 10)));
+
+        // * Act
+        Page<Session> result = sessionService.searchText("nothing", 0, 10);
+
+        // * Assert
+        assertTrue(result.isEmpty());
+        verify(sessionRepository, never()).findAllById(any());
+    }
+
+    @Test
+    @Tag("SessionService.findPage()")
+    @DisplayName("Finding one page of sessions ordered by date then id")
+    public void testFindingASessionPage() {
+        // * Arrange
+        PageRequest pageRequest = PageRequest.of(2, 10, Sort.by("date", "id"));
+        Page<Session> page = new PageImpl<>(List.of(session), pageRequest, 21);
+        when(sessionRepository.findAll(pageRequest)).thenReturn(page);
+
+        // * Act
+        Page<Session> result = sessionService.findPage(2, 10);
+
+        // * Assert
+        assertEquals(page, result);
+    }
+
+    @Test
+    @Tag("SessionService.findAfter()")
+    @DisplayName("Finding the first keyset page without a cursor")
+    public void testFindingFirstKeysetPage() {
+        // * Arrange
+        when(sessionRepository.findAllByOrderByDateAscIdAsc(any(Pageable.class))).thenReturn(List.of(session));
+
+        // * Act
+        List<Session> result = sessionService.findAfter(null, null, 10);
+
+        // * Assert
+        verify(sessionRepository).findAllByOrderByDateAscIdAsc(PageRequest.of(0, 10));
+        assertEquals(List.of(session), result);
+    }
+
+    @Test
+    @Tag("SessionService.findAfter()")
+    @DisplayName("Finding the sessions after a (date, id) cursor")
+    public void testFindingSessionsAfterCursor() {
+        // * Arrange
+        Date date = session.getDate();
+        when(sessionRepository.findAfter(date, 1L, PageRequest.of(0, 10))).thenReturn(List.of(session));
+
+        // * Act
+        List<Session> result = sessionService.findAfter(date, 1L, 10);
+
+        // * Assert
+        assertEquals(List.of(session), result);
+    }
+
     @Test
     @Tag("SessionService.getById()")
     @DisplayName("Get session by id")
@@ -164,21 +345,45 @@ public class SessionServiceUnitTest {
         Long userId = 69L;
         Long sessionId = 1L;
 
-        User mockedUser = new User("Test", "Test",
-                "Test", "Test1", false);
-        mockedUser.setId(userId);
-
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-        when(userRepository.findById(userId)).thenReturn(Optional.of(mockedUser));
+        when(userRepository.existsById(userId)).thenReturn(true);
+        when(bookingEngine.book(sessionId, userId)).thenReturn(BookingOutcome.BOOKED);
 
         // * Act
         sessionService.participate(sessionId, userId);
 
         // * Assert
-        verify(sessionRepository).findById(sessionId);
-        verify(userRepository).findById(userId);
+        verify(bookingEngine).book(sessionId, userId);
+        verify(sessionRepository, never()).save(any());
+        assertEquals(1, bookings("booked"));
+    }
+
+    @Test
+    @Tag("SessionService.participate()")
+    @DisplayName("Participate twice in a session")
+    public void testParticipateTwice() {
+        // * Arrange
+        when(userRepository.existsById(2L)).thenReturn(true);
+        when(bookingEngine.book(1L, 2L)).thenThrow(new BadRequestException());
 
-        assertTrue(session.getUsers().contains(mockedUser));
+        // * Act
+        // * Assert
+        assertThrows(BadRequestException.class, () -> sessionService.participate(1L, 2L));
+        assertEquals(1, bookings("conflict"));
+        assertEquals(0, bookings("booked"));
+    }
+
+    @Test
+    @Tag("SessionService.participate()")
+    @DisplayName("Participate with a user that does not exist")
+    public void testParticipateUnknownUser() {
+        // * Arrange
+        when(userRepository.existsById(2L)).thenReturn(false);
+
+        // * Act
+        // * Assert
+        assertThrows(NotFoundException.class, () -> sessionService.participate(1L, 2L));
+        verify(bookingEngine, never()).book(any(), any());
+        assertEquals(1, bookings("not_found"));
     }
 
     @Test
@@ -189,21 +394,126 @@ public class SessionServiceUnitTest {
         Long userIdToRemove = 420L;
         Long sessionId = 1L;
 
-        User mockedUser = new User("Test2", "Test2",
-                "Test23", "TestPP2", false);
-        mockedUser.setId(userIdToRemove);
+        // * Act
+        sessionService.noLongerParticipate(sessionId, userIdToRemove);
 
-        session.getUsers().add(mockedUser);
+        // * Assert
+        verify(bookingEngine).cancel(sessionId, userIdToRemove);
+        verify(sessionRepository, never()).save(any());
+    }
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-        when(sessionRepository.save(session)).thenReturn(session);
+    @Test
+    @Tag("SessionService.participateAll()")
+    @DisplayName("Booking a group returns one result per item, from a single call to the booking engine")
+    public void testParticipateAll() {
+        // * Arrange
+        when(userRepository.findExistingIds(any())).thenReturn(List.of(1L, 2L, 3L));
+        when(bookingEngine.bookAll(List.of(10L, 10L, 10L, 11L), List.of(1L, 2L, 3L, 1L))).thenReturn(List.of(
+                BookingOutcome.BOOKED, BookingOutcome.waitlisted(1), BookingOutcome.ALREADY_REGISTERED,
+                BookingOutcome.SESSION_NOT_FOUND));
 
         // * Act
-        sessionService.noLongerParticipate(sessionId, userIdToRemove);
+        List<ParticipationResult> results = sessionService.participateAll(List.of(
+                new Participation(10L, 1L), new Participation(10L, 2L), new Participation(10L, 3L),
+                new Participation(10L, 4L), new Participation(11L, 1L)));
+
+        // * Assert
+        assertEquals(ParticipationResult.Status.BOOKED, results.get(0).getStatus());
+        assertEquals(ParticipationResult.Status.WAITLISTED, results.get(1).getStatus());
+        assertEquals(1, results.get(1).getPosition());
+        assertEquals(ParticipationResult.Status.ALREADY_REGISTERED, results.get(2).getStatus());
+        assertEquals(ParticipationResult.Status.NOT_FOUND, results.get(3).getStatus());
+        assertEquals(ParticipationResult.Status.NOT_FOUND, results.get(4).getStatus());
+        verify(userRepository).findExistingIds(any());
+        verify(bookingEngine, never()).book(any(), any());
+        verify(bookingEngine, never()).flush();
+        assertEquals(1, bookings("booked"));
+        assertEquals(1, bookings("waitlisted"));
+        assertEquals(1, bookings("conflict"));
+        assertEquals(2, bookings("not_found"));
+    }
+
+    @Test
+    @Tag("SessionService.participateAll()")
+    @DisplayName("Items of a batch the database did not take are reported as failed")
+    public void testParticipateAllWhenTheBatchIsNotWritten() {
+        // * Arrange
+        when(userRepository.findExistingIds(any())).thenReturn(List.of(1L, 2L));
+        when(bookingEngine.bookAll(List.of(10L, 10L), List.of(1L, 2L)))
+                .thenReturn(List.of(BookingOutcome.NOT_WRITTEN, BookingOutcome.NOT_WRITTEN));
+
+        // * Act
+        List<ParticipationResult> results = sessionService.participateAll(List.of(
+                new Participation(10L, 1L), new Participation(10L, 2L)));
+
+        // * Assert
+        assertEquals(ParticipationResult.Status.FAILED, results.get(0).getStatus());
+        assertEquals(ParticipationResult.Status.FAILED, results.get(1).getStatus());
+        assertEquals(2, bookings("failed"));
+        assertEquals(0, bookings("booked"));
+    }
+
+    @Test
+    @Tag("SessionService.findByParticipant()")
+    @DisplayName("Listing the sessions of a user with an open date range")
+    public void testFindingSessionsByParticipant() {
+        // * Arrange
+        Date date = new Date(1_000L);
+        Date to = new Date(2_000L);
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{1, "Yoga", date, 2L});
+        rows.add(new Object[]{3L, "Pilates", date, null});
+        when(sessionRepository.findSummariesByParticipant(eq(7L), notNull(), eq(to))).thenReturn(rows);
+
+        // * Act
+        List<SessionSummaryDto> result = sessionService.findByParticipant(7L, null, to);
 
         // * Assert
-        verify(sessionRepository).findById(sessionId);
+        assertEquals(List.of(new SessionSummaryDto(1L, "Yoga", date, 2L),
+                new SessionSummaryDto(3L, "Pilates", date, null)), result);
+    }
+
+    @Test
+    @Tag("SessionService.search()")
+    @DisplayName("Searching the sessions of one teacher uses the teacher query")
+    public void testSearchingByTeacher() {
+        // * Arrange
+        Date from = new Date(0L);
+        Date to = new Date(1_000L);
+        PageRequest pageRequest = PageRequest.of(2, 5, Sort.by(Sort.Direction.DESC, "date").and(Sort.by("id")));
+        when(sessionRepository.searchByTeacher(1L, from, to, true, pageRequest))
+                .thenReturn(new PageImpl<>(List.of(session), pageRequest, 11));
+
+        // * Act
+        Page<Session> result = sessionService.search(from, to, 1L, true, Sort.by(Sort.Direction.DESC, "date"), 2, 5);
+
+        // * Assert
+        assertEquals(List.of(session), result.getContent());
+        // Free seats are counted once the queued bookings are written
+        verify(bookingEngine).flush();
+        verify(sessionRepository, never()).search(any(), any(), anyBoolean(), any());
+    }
+
+    @Test
+    @Tag("SessionService.search()")
+    @DisplayName("Searching without a teacher uses the date window query")
+    public void testSearchingByDateWindow() {
+        // * Arrange
+        Date from = new Date(0L);
+        Date to = new Date(1_000L);
+        PageRequest pageRequest = PageRequest.of(0, 20, Sort.by("date").and(Sort.by("id")));
+        when(sessionRepository.search(from, to, false, pageRequest))
+                .thenReturn(new PageImpl<>(List.of(session), pageRequest, 1));
+
+        // * Act
+        Page<Session> result = sessionService.search(from, to, null, false, Sort.by("date"), 0, 20);
+
+        // * Assert
+        assertEquals(List.of(session), result.getContent());
+        verify(bookingEngine, never()).flush();
+    }
 
-        assertFalse(session.getUsers().contains(mockedUser));
+    private double bookings(String outcome) {
+        return meterRegistry.get("yoga.bookings").tag("outcome", outcome).counter().count();
     }
 }
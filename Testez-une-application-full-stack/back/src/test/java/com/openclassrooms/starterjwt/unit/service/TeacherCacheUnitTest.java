@@ -0,0 +1,65 @@
+package com.openclassrooms.starterjwt.unit.service;
+
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.services.TeacherCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TeacherCacheUnitTest {
+
+    private TeacherCache teacherCache;
+
+    private Teacher teacher;
+
+    @BeforeEach
+    void setUp() {
+        teacherCache = new TeacherCache(100, 60_000);
+        teacher = new Teacher().setId(1L).setFirstName("Margot").setLastName("DELAHAYE");
+    }
+
+    @Test
+    void getTeacher_ShouldCountHitsAndMisses() {
+        assertNull(teacherCache.getTeacher(1L));
+
+        teacherCache.putTeacher(teacher);
+
+        assertSame(teacher, teacherCache.getTeacher(1L));
+        assertEquals(1, teacherCache.getHitCount());
+        assertEquals(1, teacherCache.getMissCount());
+        assertEquals(0.5, teacherCache.getHitRate());
+    }
+
+    @Test
+    void getTeachers_ShouldOnlyReturnCachedTeachers() {
+        teacherCache.putTeacher(teacher);
+
+        assertEquals(Map.of(1L, teacher), teacherCache.getTeachers(List.of(1L, 2L)));
+    }
+
+    @Test
+    void evict_ShouldDropTheTeacherAndTheList() {
+        Teacher other = new Teacher().setId(2L).setFirstName("Hélène").setLastName("THIERCELIN");
+        teacherCache.putAllTeachers(List.of(teacher, other));
+
+        teacherCache.evict(1L);
+
+        assertNull(teacherCache.getTeacher(1L));
+        assertNull(teacherCache.getAllTeachers());
+        assertSame(other, teacherCache.getTeacher(2L));
+    }
+
+    @Test
+    void evictAll_ShouldEmptyTheCache() {
+        teacherCache.putAllTeachers(List.of(teacher));
+
+        teacherCache.evictAll();
+
+        assertNull(teacherCache.getTeacher(1L));
+        assertNull(teacherCache.getAllTeachers());
+    }
+}
@@ -1,6 +1,8 @@
 package com.openclassrooms.starterjwt.unit.service;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -8,6 +10,7 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -21,6 +24,8 @@ import org.springframework.boot.test.context.SpringBootTest;
 
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.services.ResourceVersions;
+import com.openclassrooms.starterjwt.services.TeacherCache;
 import com.openclassrooms.starterjwt.services.TeacherService;
 
 
@@ -35,7 +40,7 @@ public class TeacherServiceUnitTest {
 
     @BeforeEach
     void setUp() {
-        teacherService = new TeacherService(teacherRepository);
+        teacherService = new TeacherService(teacherRepository, new TeacherCache(100, 60_000), new ResourceVersions());
     }
 
     @Test
@@ -120,4 +125,43 @@ public class TeacherServiceUnitTest {
 
         assertNull(result);
     }
+
+    @Test
+    @Tag("TeacherService.findAll()")
+    @DisplayName("Serve the teacher list and its teachers from the cache")
+    public void testFindAllTeachersIsCached() {
+        // * Arrange
+        Teacher teacher = new Teacher().setId(1L).setLastName("DELAHAYE").setFirstName("Margot");
+        when(teacherRepository.findAll()).thenReturn(List.of(teacher));
+
+        // * Act
+        teacherService.findAll();
+        List<Teacher> result = teacherService.findAll();
+        Teacher byId = teacherService.findById(1L);
+
+        // * Assert
+        verify(teacherRepository, times(1)).findAll();
+        verify(teacherRepository, never()).findById(1L);
+        assertEquals(List.of(teacher), result);
+        assertEquals(teacher, byId);
+    }
+
+    @Test
+    @Tag("TeacherService.findAllById()")
+    @DisplayName("Only load the teachers missing from the cache")
+    public void testFindAllTeachersByIdLoadsMissesOnly() {
+        // * Arrange
+        Teacher cached = new Teacher().setId(1L).setLastName("DELAHAYE").setFirstName("Margot");
+        Teacher missing = new Teacher().setId(2L).setLastName("THIERCELIN").setFirstName("Hélène");
+        when(teacherRepository.findById(1L)).thenReturn(Optional.of(cached));
+        when(teacherRepository.findAllById(Set.of(2L))).thenReturn(List.of(missing));
+        teacherService.findById(1L);
+
+        // * Act
+        List<Teacher> result = teacherService.findAllById(List.of(1L, 2L));
+
+        // * Assert
+        verify(teacherRepository).findAllById(Set.of(2L));
+        assertEquals(Set.of(cached, missing), Set.copyOf(result));
+    }
 }
@@ -1,6 +1,9 @@
 package com.openclassrooms.starterjwt.unit.service;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationRegistry;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
+import com.openclassrooms.starterjwt.services.KnownUserIds;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -24,12 +27,21 @@ public class UserServiceUnitTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    @Mock
+    private TokenRevocationRegistry tokenRevocationRegistry;
+
+    @Mock
+    private KnownUserIds knownUserIds;
+
     @InjectMocks
     private UserService userService;
 
     @BeforeEach
     void setUp() {
-        userService = new UserService(userRepository);
+        userService = new UserService(userRepository, userDetailsCache, tokenRevocationRegistry, knownUserIds);
     }
 
     @Test
@@ -83,5 +95,8 @@ public class UserServiceUnitTest {
 
         // * Assert
         verify(userRepository).deleteById(userId);
+        verify(tokenRevocationRegistry).revoke(userId);
+        verify(userDetailsCache).removeUserFromCacheById(userId);
+        verify(knownUserIds).forget(userId);
     }
 }
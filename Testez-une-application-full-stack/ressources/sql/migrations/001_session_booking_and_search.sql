@@ -0,0 +1,20 @@
+-- Brings a database created from an earlier script.sql up to date.
+-- Run once, in order; script.sql already contains these changes for new databases.
+
+ALTER TABLE `SESSIONS` ADD COLUMN `capacity` INT AFTER `description`;
+
+CREATE TABLE `WAITLIST` (
+  `id` INT PRIMARY KEY AUTO_INCREMENT,
+  `session_id` INT NOT NULL,
+  `user_id` INT NOT NULL,
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  CONSTRAINT `uk_waitlist_session_user` UNIQUE (`session_id`, `user_id`)
+);
+
+-- Fails if PARTICIPATE holds duplicate bookings; remove them first
+ALTER TABLE `PARTICIPATE` ADD CONSTRAINT `uk_participate_session_user` UNIQUE (`session_id`, `user_id`);
+
+CREATE INDEX `idx_sessions_date_id` ON `SESSIONS` (`date`, `id`);
+CREATE INDEX `idx_sessions_teacher_date` ON `SESSIONS` (`teacher_id`, `date`);
+CREATE INDEX `idx_participate_user_session` ON `PARTICIPATE` (`user_id`, `session_id`);
+CREATE INDEX `idx_waitlist_session_id` ON `WAITLIST` (`session_id`, `id`);
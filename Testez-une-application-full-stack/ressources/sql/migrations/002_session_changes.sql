@@ -0,0 +1,11 @@
+-- Delta sync: updated_at lookups and the session deletion log.
+-- Run after 001; script.sql already contains these changes for new databases.
+
+CREATE TABLE `SESSION_TOMBSTONES` (
+  `id` INT PRIMARY KEY AUTO_INCREMENT,
+  `session_id` INT NOT NULL,
+  `deleted_at` DATETIME NOT NULL
+);
+
+CREATE INDEX `idx_sessions_updated_at_id` ON `SESSIONS` (`updated_at`, `id`);
+CREATE INDEX `idx_session_tombstones_deleted_at` ON `SESSION_TOMBSTONES` (`deleted_at`);
@@ -0,0 +1,9 @@
+-- Bulk imports: rows committed so far by each import, to resume an interrupted one.
+-- Run after 002; script.sql already contains these changes for new databases.
+
+CREATE TABLE `BULK_IMPORT_CHECKPOINTS` (
+  `import_id` VARCHAR(64) PRIMARY KEY,
+  `table_name` VARCHAR(20) NOT NULL,
+  `rows_committed` BIGINT NOT NULL,
+  `updated_at` DATETIME NOT NULL
+);
@@ -0,0 +1,10 @@
+-- Waiting rows follow their session and user: deleting either deletes them.
+-- Run after 003; script.sql already contains these changes for new databases.
+
+-- Rows left behind by sessions or users deleted before the keys existed
+DELETE FROM `WAITLIST`
+WHERE `session_id` NOT IN (SELECT `id` FROM `SESSIONS`)
+   OR `user_id` NOT IN (SELECT `id` FROM `USERS`);
+
+ALTER TABLE `WAITLIST` ADD CONSTRAINT `fk_waitlist_session` FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`) ON DELETE CASCADE;
+ALTER TABLE `WAITLIST` ADD CONSTRAINT `fk_waitlist_user` FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`) ON DELETE CASCADE;
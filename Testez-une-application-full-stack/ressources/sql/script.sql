@@ -10,6 +10,7 @@ CREATE TABLE `SESSIONS` (
   `id` INT PRIMARY KEY AUTO_INCREMENT,
   `name` VARCHAR(50),
   `description` VARCHAR(2000),
+  `capacity` INT,
   `date` TIMESTAMP,
   `teacher_id` int,
   `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
@@ -32,9 +33,40 @@ CREATE TABLE `PARTICIPATE` (
   `session_id` INT
 );
 
+CREATE TABLE `WAITLIST` (
+  `id` INT PRIMARY KEY AUTO_INCREMENT,
+  `session_id` INT NOT NULL,
+  `user_id` INT NOT NULL,
+  `created_at` TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+  CONSTRAINT `uk_waitlist_session_user` UNIQUE (`session_id`, `user_id`)
+);
+
+CREATE TABLE `SESSION_TOMBSTONES` (
+  `id` INT PRIMARY KEY AUTO_INCREMENT,
+  `session_id` INT NOT NULL,
+  `deleted_at` DATETIME NOT NULL
+);
+
+CREATE TABLE `BULK_IMPORT_CHECKPOINTS` (
+  `import_id` VARCHAR(64) PRIMARY KEY,
+  `table_name` VARCHAR(20) NOT NULL,
+  `rows_committed` BIGINT NOT NULL,
+  `updated_at` DATETIME NOT NULL
+);
+
 ALTER TABLE `SESSIONS` ADD FOREIGN KEY (`teacher_id`) REFERENCES `TEACHERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`);
 ALTER TABLE `PARTICIPATE` ADD FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`);
+ALTER TABLE `PARTICIPATE` ADD CONSTRAINT `uk_participate_session_user` UNIQUE (`session_id`, `user_id`);
+ALTER TABLE `WAITLIST` ADD CONSTRAINT `fk_waitlist_session` FOREIGN KEY (`session_id`) REFERENCES `SESSIONS` (`id`) ON DELETE CASCADE;
+ALTER TABLE `WAITLIST` ADD CONSTRAINT `fk_waitlist_user` FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`) ON DELETE CASCADE;
+
+CREATE INDEX `idx_sessions_date_id` ON `SESSIONS` (`date`, `id`);
+CREATE INDEX `idx_sessions_teacher_date` ON `SESSIONS` (`teacher_id`, `date`);
+CREATE INDEX `idx_participate_user_session` ON `PARTICIPATE` (`user_id`, `session_id`);
+CREATE INDEX `idx_waitlist_session_id` ON `WAITLIST` (`session_id`, `id`);
+CREATE INDEX `idx_sessions_updated_at_id` ON `SESSIONS` (`updated_at`, `id`);
+CREATE INDEX `idx_session_tombstones_deleted_at` ON `SESSION_TOMBSTONES` (`deleted_at`);
 
 INSERT INTO TEACHERS (first_name, last_name)
 VALUES ('Margot', 'DELAHAYE'),